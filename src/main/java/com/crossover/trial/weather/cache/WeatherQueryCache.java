@@ -0,0 +1,295 @@
+package com.crossover.trial.weather.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.crossover.trial.weather.entity.AtmosphericInformation;
+import com.crossover.trial.weather.stats.CountMinSketch;
+import com.crossover.trial.weather.store.AirportSlot;
+import com.crossover.trial.weather.store.AirportStore;
+
+/**
+ * Caches the results of weather queries by airport and radius. A result remembers the catalog version and the
+ * version of every airport in the radius when it was computed, and is only reused while all of them are unchanged,
+ * so collector updates never have to find the cached results they affect.
+ *
+ * The cache holds at most -Dweather.cache.size results (default 1024, 0 turns it off). Results are kept in least
+ * recently used order and a new result only replaces the least recently used one if its query is estimated to be
+ * more frequent, TinyLFU style: the query frequencies live in a {@link CountMinSketch} that is halved every ten
+ * times the capacity queries, so that a burst of one-off queries does not flush the popular ones.
+ *
+ * Lookups and the check of the versions take no lock. A lookup only puts its query into a small lossy buffer, and
+ * whoever gets the policy lock without waiting replays the buffer into the frequencies and the recency order, as
+ * W-TinyLFU caches do; under heavy load some lookups are not counted, which only makes the policy approximate.
+ * Results are admitted under the policy lock.
+ *
+ * @author code test administrator
+ */
+public class WeatherQueryCache {
+
+    /** system property with the number of results kept */
+    public static final String SIZE_PROPERTY = "weather.cache.size";
+
+    private static final int DEPTH = 4;
+
+    /** queries buffered between policy updates, a power of two */
+    private static final int READ_BUFFER = 128;
+
+    /** a policy update is tried every that many buffered queries */
+    private static final int DRAIN_PERIOD = READ_BUFFER / 2;
+
+    private final AirportStore store;
+
+    private final int capacity;
+
+    /** the results, read without locking */
+    private final ConcurrentHashMap<Key, Result> results = new ConcurrentHashMap<>();
+
+    /** guards the frequencies, the recency order and the replay of the read buffer */
+    private final ReentrantLock policyLock = new ReentrantLock();
+
+    /** estimated query frequencies by key hash */
+    private final CountMinSketch frequencies;
+
+    /** queries counted between halvings of the frequencies */
+    private final int samplePeriod;
+
+    /** the admitted queries in access order */
+    private final LinkedHashMap<Key, Boolean> recency = new LinkedHashMap<>(16, 0.75f, true);
+
+    private int samples;
+
+    /** queries not yet replayed into the policy, a later query may overwrite an earlier one */
+    private final AtomicReferenceArray<Key> reads = new AtomicReferenceArray<>(READ_BUFFER);
+
+    private final AtomicLong readTail = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param store the airports the results are computed from
+     * @param capacity the number of results kept, 0 to turn caching off
+     */
+    public WeatherQueryCache(AirportStore store, int capacity) {
+        this.store = store;
+        this.capacity = capacity;
+        frequencies = new CountMinSketch(DEPTH, Math.max(16, capacity * 4));
+        samplePeriod = Math.max(1, capacity * 10);
+    }
+
+    /**
+     * @param store the airports the results are computed from
+     * @return a cache of the size set by the system properties
+     */
+    public static WeatherQueryCache fromSystemProperties(AirportStore store) {
+        return new WeatherQueryCache(store, Integer.getInteger(SIZE_PROPERTY, 1024));
+    }
+
+    /**
+     * @param origin the queried airport
+     * @param radius the query radius
+     * @return the cached result or null if there is no current one
+     */
+    public List<AtmosphericInformation> get(AirportSlot origin, double radius) {
+        if (capacity == 0) {
+            return null;
+        }
+        Key key = new Key(origin.getHandle(), radius);
+        recordRead(key);
+        Result result = results.get(key);
+        if (result != null && !result.isCurrent(store, origin)) {
+            results.remove(key, result);
+            result = null;
+        }
+        if (result == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return result.value;
+    }
+
+    /**
+     * Offer a computed result to the cache.
+     *
+     * @param origin the queried airport
+     * @param radius the query radius
+     * @param result the result with the versions it was computed from
+     */
+    public void put(AirportSlot origin, double radius, Result result) {
+        if (capacity == 0) {
+            return;
+        }
+        Key key = new Key(origin.getHandle(), radius);
+        policyLock.lock();
+        try {
+            drainReads();
+            if (recency.size() >= capacity && !recency.containsKey(key)) {
+                Iterator<Key> eldest = recency.keySet().iterator();
+                Key victim = eldest.next();
+                // a victim whose result went stale makes room without a contest
+                if (results.containsKey(victim)
+                        && frequencies.estimate(key.hashCode()) <= frequencies.estimate(victim.hashCode())) {
+                    return;
+                }
+                eldest.remove();
+                results.remove(victim);
+                evictions.increment();
+            }
+            recency.put(key, Boolean.TRUE);
+            results.put(key, result);
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    /**
+     * @return the hits, misses, evictions and size of the cache
+     */
+    public Map<String, Long> statistics() {
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        statistics.put("hits", hits.sum());
+        statistics.put("misses", misses.sum());
+        statistics.put("evictions", evictions.sum());
+        statistics.put("size", (long) results.size());
+        return statistics;
+    }
+
+    /**
+     * Forget all results and counts.
+     */
+    public void clear() {
+        policyLock.lock();
+        try {
+            drainReads();
+            results.clear();
+            recency.clear();
+            frequencies.clear();
+            samples = 0;
+        } finally {
+            policyLock.unlock();
+        }
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+
+    /** buffers a query for the policy and replays the buffer if it is due and nobody else is at it */
+    private void recordRead(Key key) {
+        long tail = readTail.getAndIncrement();
+        reads.lazySet((int) tail & (READ_BUFFER - 1), key);
+        if ((tail & (DRAIN_PERIOD - 1)) == DRAIN_PERIOD - 1 && policyLock.tryLock()) {
+            try {
+                drainReads();
+            } finally {
+                policyLock.unlock();
+            }
+        }
+    }
+
+    /** replays the buffered queries into the frequencies and the recency order, called with the policy lock */
+    private void drainReads() {
+        for (int i = 0; i < READ_BUFFER; i++) {
+            Key key = reads.getAndSet(i, null);
+            if (key == null) {
+                continue;
+            }
+            frequencies.increment(key.hashCode());
+            if (++samples == samplePeriod) {
+                samples = 0;
+                frequencies.halve();
+            }
+            recency.get(key);
+        }
+    }
+
+    /**
+     * A query result and the versions it was computed from.
+     */
+    public static final class Result {
+
+        private final long catalogVersion;
+
+        private final AirportSlot origin;
+
+        /** the airports the result was computed from, null entries were removed while computing */
+        private final AirportSlot[] slots;
+
+        /** the versions of the slots, read before their weather */
+        private final long[] versions;
+
+        private final List<AtmosphericInformation> value;
+
+        /**
+         * @param catalogVersion the store version read before the airports in the radius were found
+         * @param origin the queried airport
+         * @param slots the airports in the radius
+         * @param versions the versions of the slots, each read before the slot's weather
+         * @param value the result, not modified afterwards
+         */
+        public Result(long catalogVersion, AirportSlot origin, AirportSlot[] slots, long[] versions,
+                      List<AtmosphericInformation> value) {
+            this.catalogVersion = catalogVersion;
+            this.origin = origin;
+            this.slots = slots;
+            this.versions = versions;
+            this.value = value;
+        }
+
+        public List<AtmosphericInformation> getValue() {
+            return value;
+        }
+
+        boolean isCurrent(AirportStore store, AirportSlot queried) {
+            if (queried != origin || store.version() != catalogVersion) {
+                return false;
+            }
+            for (int i = 0; i < slots.length; i++) {
+                if (slots[i] != null && slots[i].getVersion() != versions[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A query, the origin by slot handle and the radius.
+     */
+    private static final class Key {
+
+        final int handle;
+
+        final double radius;
+
+        Key(int handle, double radius) {
+            this.handle = handle;
+            this.radius = radius;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return handle == other.handle && Double.compare(radius, other.radius) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * handle + Double.hashCode(radius);
+        }
+    }
+}
@@ -1,69 +1,256 @@
 package com.crossover.trial.weather.client;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.InvocationCallback;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 
 import com.crossover.trial.weather.entity.AirportData;
+import com.crossover.trial.weather.persistence.AirportCatalog;
 
 /**
- * A simple airport loader which reads a file from disk and sends entries to the webservice
+ * An airport loader which reads a file from disk and sends its entries to the webservice. Requests are sent
+ * asynchronously with a bounded number in flight, batches of airports go to the catalog import of the collector,
+ * failed requests are retried with a growing delay and the progress is reported every second.
+ *
+ * Set with system properties: -Dweather.loader.inflight the most requests in flight (default 32),
+ * -Dweather.loader.batch the airports per request (default 500, 1 sends each airport to its own add path) and
+ * -Dweather.loader.retries the retries of a failed request (default 3).
  *
- * 
  * @author code test administrator
  */
-public class AirportLoader {
+public class AirportLoader implements Closeable {
 
-    /** end point to supply updates */
-    private WebTarget collect;
-    
     private static final Logger LOGGER = Logger.getLogger(AirportLoader.class.getName());
 
+    /** system property with the most requests in flight */
+    public static final String IN_FLIGHT_PROPERTY = "weather.loader.inflight";
+
+    /** system property with the airports sent per request */
+    public static final String BATCH_PROPERTY = "weather.loader.batch";
+
+    /** system property with the retries of a failed request */
+    public static final String RETRIES_PROPERTY = "weather.loader.retries";
+
+    private static final String BASE_URL = "http://localhost:9090/collect";
+
+    /** delay before the first retry, doubled for every further one */
+    private static final long RETRY_DELAY_MILLIS = 200;
+
+    private static final long REPORT_MILLIS = 1000;
+
+    private final Client client;
+
+    /** end point to supply updates */
+    private final WebTarget collect;
+
+    private final int maxInFlight;
+
+    private final int batch;
+
+    private final int retries;
+
+    private final Semaphore inFlight;
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "airport-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicInteger loaded = new AtomicInteger();
+
+    private final AtomicInteger failed = new AtomicInteger();
+
     public AirportLoader() {
-        Client client = ClientBuilder.newClient();
-        collect = client.target("http://localhost:9090/collect");
+        this(BASE_URL, Integer.getInteger(IN_FLIGHT_PROPERTY, 32), Integer.getInteger(BATCH_PROPERTY, 500),
+                Integer.getInteger(RETRIES_PROPERTY, 3));
+    }
+
+    public AirportLoader(String collectUrl, int maxInFlight, int batch, int retries) {
+        if (maxInFlight < 1 || batch < 1 || retries < 0) {
+            throw new IllegalArgumentException("invalid loader settings");
+        }
+        client = ClientBuilder.newClient();
+        collect = client.target(collectUrl);
+        this.maxInFlight = maxInFlight;
+        this.batch = batch;
+        this.retries = retries;
+        inFlight = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Send the airports of a catalog in the airports.dat format and wait until all are answered.
+     *
+     * @param airportDataStream the catalog
+     * @return the number of airports that could not be loaded
+     * @throws IOException if the catalog can not be read
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public int upload(InputStream airportDataStream) throws IOException, InterruptedException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1 << 16];
+        for (int n; (n = airportDataStream.read(buffer)) != -1; ) {
+            content.write(buffer, 0, n);
+        }
+        return upload(AirportCatalog.parse(ByteBuffer.wrap(content.toByteArray()), 1));
     }
 
-    public void upload(InputStream airportDataStream) throws IOException{
-        BufferedReader reader = new BufferedReader(new InputStreamReader(airportDataStream));
-        String l = null;
-
-        while ((l = reader.readLine()) != null) {
-             String[] infoAirport = l.replaceAll("\"", "").split(",");
-             String iata = infoAirport[4];
-             double latitude = new Double(infoAirport[6]);
-             double longitude= new Double(infoAirport[7]);
-             AirportData airport = new AirportData(iata, latitude, longitude);
-             populate(airport);
+    /**
+     * Send airports and wait until all are answered.
+     *
+     * @param airports the airports
+     * @return the number of airports that could not be loaded
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public int upload(List<AirportData> airports) throws InterruptedException {
+        loaded.set(0);
+        failed.set(0);
+        long start = System.nanoTime();
+        ScheduledFuture<?> report = timer.scheduleAtFixedRate(() -> report(airports.size(), start),
+                REPORT_MILLIS, REPORT_MILLIS, TimeUnit.MILLISECONDS);
+        try {
+            for (int from = 0; from < airports.size(); from += batch) {
+                inFlight.acquire();
+                send(request(airports.subList(from, Math.min(from + batch, airports.size()))), 0);
+            }
+            // every permit is back once the last request is answered
+            inFlight.acquire(maxInFlight);
+            inFlight.release(maxInFlight);
+        } finally {
+            report.cancel(false);
         }
+        report(airports.size(), start);
+        return failed.get();
     }
 
-    public void populate(AirportData airport) {            
-        WebTarget path = collect.path("/airport/"+ airport.getIata() + "/" + airport.getLatitude() + "/" + airport.getLongitude());
-   
-        path.request(MediaType.APPLICATION_JSON_TYPE).post(Entity.json(""));
-        
-        path.request().post(Entity.entity(airport, "application/json"));
-        LOGGER.info(path.toString());    
+    /**
+     * Send one airport and wait for the answer.
+     *
+     * @param airport the airport
+     * @return true if the airport was added
+     */
+    public boolean populate(AirportData airport) {
+        Request request = request(Collections.singletonList(airport));
+        Response response = request.target.request().post(request.entity);
+        response.close();
+        return response.getStatusInfo().getFamily() == Response.Status.Family.SUCCESSFUL;
     }
-    
-    public static void main(String[] args) throws IOException{
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        client.close();
+    }
+
+    private Request request(List<AirportData> airports) {
+        if (airports.size() == 1) {
+            AirportData airport = airports.get(0);
+            return new Request(collect.path("airport").path(airport.getIata())
+                    .path(Double.toString(airport.getLatitude())).path(Double.toString(airport.getLongitude())),
+                    Entity.text(""), 1);
+        }
+        StringBuilder catalog = new StringBuilder(airports.size() * 40);
+        for (AirportData airport : airports) {
+            catalog.append(AirportCatalog.format(airport));
+        }
+        return new Request(collect.path("airports"), Entity.entity(catalog.toString(), MediaType.TEXT_PLAIN_TYPE),
+                airports.size());
+    }
+
+    /** sends a request holding an in flight permit, the permit is released once it is done with */
+    private void send(Request request, int attempt) {
+        request.target.request().async().post(request.entity, new InvocationCallback<Response>() {
+            @Override
+            public void completed(Response response) {
+                int status = response.getStatus();
+                response.close();
+                if (response.getStatusInfo().getFamily() == Response.Status.Family.SUCCESSFUL) {
+                    loaded.addAndGet(request.airports);
+                    inFlight.release();
+                } else if (response.getStatusInfo().getFamily() == Response.Status.Family.SERVER_ERROR) {
+                    retry(request, attempt, "HTTP " + status);
+                } else {
+                    done(request, "HTTP " + status);
+                }
+            }
+
+            @Override
+            public void failed(Throwable throwable) {
+                retry(request, attempt, throwable.toString());
+            }
+        });
+    }
+
+    private void retry(Request request, int attempt, String reason) {
+        if (attempt >= retries) {
+            done(request, reason);
+            return;
+        }
+        LOGGER.fine("retrying " + request.target.getUri() + " after " + reason);
+        timer.schedule(() -> send(request, attempt + 1), RETRY_DELAY_MILLIS << attempt, TimeUnit.MILLISECONDS);
+    }
+
+    private void done(Request request, String reason) {
+        LOGGER.warning("failed to load " + request.airports + " airports with " + request.target.getUri() + ": "
+                + reason);
+        failed.addAndGet(request.airports);
+        inFlight.release();
+    }
+
+    private void report(int total, long start) {
+        double seconds = Math.max(1, System.nanoTime() - start) / 1e9;
+        LOGGER.info(String.format("loaded %d of %d airports, %d failed, %.0f airports/s",
+                loaded.get(), total, failed.get(), loaded.get() / seconds));
+    }
+
+    /**
+     * A request carrying some airports.
+     */
+    private static final class Request {
+
+        final WebTarget target;
+
+        final Entity<String> entity;
+
+        final int airports;
+
+        Request(WebTarget target, Entity<String> entity, int airports) {
+            this.target = target;
+            this.entity = entity;
+            this.airports = airports;
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
         File airportDataFile = new File(args[0]);
-        if (!airportDataFile.exists() || airportDataFile.length() == 0) {           
-             LOGGER.info(airportDataFile + " is not a valid input");    
+        if (!airportDataFile.exists() || airportDataFile.length() == 0) {
+            LOGGER.info(airportDataFile + " is not a valid input");
         } else {
-            AirportLoader al = new AirportLoader();
-            al.upload(new FileInputStream(airportDataFile));
+            int failures;
+            try (AirportLoader al = new AirportLoader()) {
+                failures = al.upload(AirportCatalog.read(airportDataFile.toPath()));
+            }
+            System.exit(failures == 0 ? 0 : 1);
         }
     }
 }
@@ -0,0 +1,112 @@
+package com.crossover.trial.weather.client;
+
+import static com.crossover.trial.weather.endpoint.api.BinaryCollectorProtocol.ACCEPTED;
+import static com.crossover.trial.weather.endpoint.api.BinaryCollectorProtocol.RECORD_SIZE;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import com.crossover.trial.weather.endpoint.api.BinaryCollectorProtocol;
+import com.crossover.trial.weather.entity.DataPoint;
+import com.crossover.trial.weather.entity.DataPointType;
+import com.crossover.trial.weather.store.IataCode;
+
+/**
+ * Sends weather updates with the {@link BinaryCollectorProtocol} over one persistent connection. Records are
+ * buffered and written a batch at a time, the server's answers to a batch are read after the whole batch is sent.
+ *
+ * Not thread safe, use one client per sending thread.
+ *
+ * @author code test administrator
+ */
+public class BinaryCollectorClient implements Closeable {
+
+    /** records written per batch */
+    private static final int BATCH = 1024;
+
+    private final SocketChannel channel;
+
+    private final ByteBuffer records = ByteBuffer.allocateDirect(BATCH * RECORD_SIZE);
+
+    private final ByteBuffer statuses = ByteBuffer.allocateDirect(BATCH);
+
+    /** rejected records since the last {@link #flush()} */
+    private int rejected;
+
+    public BinaryCollectorClient(String host, int port) throws IOException {
+        channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+    }
+
+    /**
+     * Queue an update.
+     *
+     * @param iata the 3 letter airport code
+     * @param type the data point type
+     * @param dp the data point
+     * @param time the update time in milliseconds since UTC epoch, 0 for the time of arrival
+     * @throws IOException if a full batch can not be sent
+     */
+    public void send(String iata, DataPointType type, DataPoint dp, long time) throws IOException {
+        if (records.remaining() < RECORD_SIZE) {
+            sendBatch();
+        }
+        records.putInt(IataCode.encode(iata))
+                .putInt(type.ordinal())
+                .putDouble(dp.getMean())
+                .putInt(dp.getFirst())
+                .putInt(dp.getSecond())
+                .putInt(dp.getThird())
+                .putInt(dp.getCount())
+                .putLong(time);
+    }
+
+    /**
+     * Send the queued updates and wait for their answers.
+     *
+     * @return the number of updates the server rejected since the last flush
+     * @throws IOException if the updates can not be sent
+     */
+    public int flush() throws IOException {
+        sendBatch();
+        int result = rejected;
+        rejected = 0;
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void sendBatch() throws IOException {
+        records.flip();
+        int sent = records.remaining() / RECORD_SIZE;
+        while (records.hasRemaining()) {
+            channel.write(records);
+        }
+        records.clear();
+
+        statuses.clear().limit(sent);
+        while (statuses.hasRemaining()) {
+            if (channel.read(statuses) < 0) {
+                throw new EOFException("connection closed with " + statuses.remaining() + " updates unanswered");
+            }
+        }
+        statuses.flip();
+        while (statuses.hasRemaining()) {
+            if (statuses.get() != ACCEPTED) {
+                rejected++;
+            }
+        }
+    }
+}
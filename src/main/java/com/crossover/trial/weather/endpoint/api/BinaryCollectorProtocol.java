@@ -0,0 +1,48 @@
+package com.crossover.trial.weather.endpoint.api;
+
+import com.crossover.trial.weather.entity.DataPointType;
+import com.crossover.trial.weather.store.IataCode;
+
+/**
+ * The compact binary protocol shared with airport weather collection systems that send too many updates for the REST
+ * collector. A station keeps a TCP connection open and streams fixed width, big endian records back to back:
+ *
+ * <pre>
+ * offset  size  field
+ *      0     4  IATA code as encoded by {@link IataCode#encode(CharSequence)}
+ *      4     4  {@link DataPointType} ordinal
+ *      8     8  mean
+ *     16     4  first
+ *     20     4  second
+ *     24     4  third
+ *     28     4  count
+ *     32     8  update time in milliseconds since UTC epoch, 0 for the time of arrival
+ * </pre>
+ *
+ * Update times more than {@link #MAX_CLOCK_SKEW_MILLIS} ahead of the server clock are rejected.
+ *
+ * The server answers every record with one status byte, in record order, so a station can keep sending without
+ * waiting for each answer.
+ *
+ * @author code test administrator
+ */
+public final class BinaryCollectorProtocol {
+
+    /** system property with the port of the binary listener, the listener only runs when it is set */
+    public static final String PORT_PROPERTY = "weather.collector.binary.port";
+
+    /** bytes in a record */
+    public static final int RECORD_SIZE = 40;
+
+    /** status of an applied record */
+    public static final byte ACCEPTED = 0;
+
+    /** status of a record for an unknown airport or type, with a mean out of range or a time in the future */
+    public static final byte REJECTED = 1;
+
+    /** how far an update time may be ahead of the server clock */
+    public static final long MAX_CLOCK_SKEW_MILLIS = 60000L;
+
+    private BinaryCollectorProtocol() {
+    }
+}
@@ -1,5 +1,7 @@
 package com.crossover.trial.weather.endpoint.api;
 
+import java.io.InputStream;
+
 import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
@@ -39,6 +41,21 @@ public interface WeatherCollectorEndpoint {
                            @PathParam("pointType") String pointType,
                            String datapointJson);
 
+    /**
+     * Update the atmospheric information of many airports in one request. The body is read as a stream, the updates
+     * of each airport are applied together and a bad update does not reject the others.
+     *
+     * @param batchJson a json list of dicts with iata, pointType and datapoint keys, as for
+     *                  {@link #updateWeather(String, String, String)}
+     *
+     * @return HTTP Response code and a json list with the status of each update in request order, 200 when applied,
+     *         400 with an error message otherwise
+     */
+    @POST
+    @Path("/weather")
+    @Produces(MediaType.APPLICATION_JSON)
+    Response updateWeatherBatch(InputStream batchJson);
+
     /**
      * Return a list of known airports as a json formatted list
      *
@@ -49,6 +66,17 @@ public interface WeatherCollectorEndpoint {
     @Produces(MediaType.APPLICATION_JSON)
     Response getAirports();
 
+    /**
+     * Add or replace many airports at once.
+     *
+     * @param airportsDat the airports in the OpenFlights airports.dat format
+     * @return HTTP Response code and a json dict with the number of imported airports
+     */
+    @POST
+    @Path("/airports")
+    @Produces(MediaType.APPLICATION_JSON)
+    Response importAirports(InputStream airportsDat);
+
     /**
      * Retrieve airport data, including latitude and longitude for a particular airport
      *
@@ -4,10 +4,14 @@ import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
+import com.crossover.trial.weather.entity.Aggregate;
 import com.crossover.trial.weather.entity.AtmosphericInformation;
+import com.crossover.trial.weather.entity.DataPointType;
+import com.crossover.trial.weather.entity.Reading;
 
 /**
  * The query only API for the Weather Server App. This API is made available to the public internet.
@@ -27,6 +31,17 @@ public interface WeatherQueryEndpoint {
     @Path("/ping")
     String ping();
 
+    /**
+     * Retrieve request counts, error counts and latency quantiles of every endpoint method and of the stages of
+     * request handling, for scraping by Prometheus.
+     *
+     * @return the metrics in the Prometheus text exposition format
+     */
+    @GET
+    @Path("/metrics")
+    @Produces("text/plain; version=0.0.4")
+    String metrics();
+
     /**
      * Retrieve the most up to date atmospheric information from the given airport and other airports in the given
      * radius.
@@ -41,4 +56,40 @@ public interface WeatherQueryEndpoint {
     @Path("/weather/{iata}/{radius}")
     @Produces(MediaType.APPLICATION_JSON)
     Response weather(@PathParam("iata") String iata, @PathParam("radius") String radiusString);
+
+    /**
+     * Retrieve the recent readings of one data point type at an airport. Only a bounded number of the latest
+     * readings is kept per airport and type.
+     *
+     * @param iata the three letter airport code
+     * @param pointType the point type, {@link DataPointType} for a complete list
+     * @param fromString start of the window in milliseconds since UTC epoch, defaults to an hour before the end
+     * @param toString end of the window in milliseconds since UTC epoch, defaults to now
+     *
+     * @return an HTTP Response and a list of {@link Reading} within the window, oldest first
+     */
+    @GET
+    @Path("/history/{iata}/{pointType}")
+    @Produces(MediaType.APPLICATION_JSON)
+    Response history(@PathParam("iata") String iata, @PathParam("pointType") String pointType,
+                     @QueryParam("from") String fromString, @QueryParam("to") String toString);
+
+    /**
+     * Retrieve the readings of one data point type at an airport aggregated into minute, hour or day buckets, for
+     * trends over longer windows than the history keeps.
+     *
+     * @param iata the three letter airport code
+     * @param pointType the point type, {@link DataPointType} for a complete list
+     * @param resolution the bucket size, minute, hour or day
+     * @param fromString start of the window in milliseconds since UTC epoch, defaults to every kept bucket
+     * @param toString end of the window in milliseconds since UTC epoch, defaults to now
+     *
+     * @return an HTTP Response and a list of {@link Aggregate} overlapping the window, oldest first
+     */
+    @GET
+    @Path("/rollup/{iata}/{pointType}/{resolution}")
+    @Produces(MediaType.APPLICATION_JSON)
+    Response rollup(@PathParam("iata") String iata, @PathParam("pointType") String pointType,
+                    @PathParam("resolution") String resolution,
+                    @QueryParam("from") String fromString, @QueryParam("to") String toString);
 }
@@ -0,0 +1,79 @@
+package com.crossover.trial.weather.endpoint.impl;
+
+import static com.crossover.trial.weather.endpoint.api.BinaryCollectorProtocol.ACCEPTED;
+import static com.crossover.trial.weather.endpoint.api.BinaryCollectorProtocol.MAX_CLOCK_SKEW_MILLIS;
+import static com.crossover.trial.weather.endpoint.api.BinaryCollectorProtocol.RECORD_SIZE;
+import static com.crossover.trial.weather.endpoint.api.BinaryCollectorProtocol.REJECTED;
+import static com.crossover.trial.weather.endpoint.impl.RestWeatherQueryEndpoint.airportStore;
+
+import java.io.IOException;
+
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.filterchain.BaseFilter;
+import org.glassfish.grizzly.filterchain.FilterChainContext;
+import org.glassfish.grizzly.filterchain.NextAction;
+
+import com.crossover.trial.weather.endpoint.api.BinaryCollectorProtocol;
+import com.crossover.trial.weather.entity.DataPointType;
+import com.crossover.trial.weather.exceptions.WeatherException;
+import com.crossover.trial.weather.store.AirportSlot;
+
+/**
+ * Grizzly filter applying {@link BinaryCollectorProtocol} records with the same checks as the REST collector. Every
+ * complete record in a read is applied and answered, a partial record waits for the rest of its bytes.
+ *
+ * @author code test administrator
+ */
+public class BinaryCollectorFilter extends BaseFilter {
+
+    private static final DataPointType[] TYPES = DataPointType.values();
+
+    @Override
+    public NextAction handleRead(FilterChainContext ctx) throws IOException {
+        Buffer input = ctx.getMessage();
+        int records = input.remaining() / RECORD_SIZE;
+        if (records == 0) {
+            return ctx.getStopAction(input);
+        }
+
+        long now = System.currentTimeMillis();
+        Buffer statuses = ctx.getMemoryManager().allocate(records);
+        for (int i = 0; i < records; i++) {
+            statuses.put(apply(input, now));
+        }
+        statuses.flip();
+        ctx.write(statuses);
+
+        if (!input.hasRemaining()) {
+            input.tryDispose();
+            return ctx.getStopAction();
+        }
+        Buffer remainder = input.split(input.position());
+        input.tryDispose();
+        return ctx.getStopAction(remainder);
+    }
+
+    /** read one record and apply it */
+    private static byte apply(Buffer input, long now) {
+        int code = input.getInt();
+        int ordinal = input.getInt();
+        double mean = input.getDouble();
+        int first = input.getInt();
+        int second = input.getInt();
+        int third = input.getInt();
+        int count = input.getInt();
+        long time = input.getLong();
+
+        AirportSlot slot = airportStore.slotOfCode(code);
+        if (slot == null || ordinal < 0 || ordinal >= TYPES.length || time > now + MAX_CLOCK_SKEW_MILLIS) {
+            return REJECTED;
+        }
+        try {
+            RestWeatherCollectorEndpoint.updateAtmosphericInformation(slot, TYPES[ordinal], mean, first, second,
+                    third, count, time > 0 ? time : now);
+            return ACCEPTED;
+        } catch (WeatherException e) {
+            return REJECTED;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.crossover.trial.weather.endpoint.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+import com.crossover.trial.weather.entity.EncodedWeather;
+import com.crossover.trial.weather.stats.LatencyHistogram;
+
+/**
+ * Writes weather query results from the JSON encodings made on update, without serializing the objects again.
+ * The time spent writing is recorded as the serialize stage of the request metrics.
+ *
+ * @author code test administrator
+ */
+@Provider
+@Produces(MediaType.APPLICATION_JSON)
+public class EncodedWeatherWriter implements MessageBodyWriter<EncodedWeather> {
+
+    private static final LatencyHistogram SERIALIZE = RestWeatherQueryEndpoint.requestMetrics.stage("serialize");
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return EncodedWeather.class.isAssignableFrom(type);
+    }
+
+    @Override
+    public long getSize(EncodedWeather weather, Class<?> type, Type genericType, Annotation[] annotations,
+                        MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(EncodedWeather weather, Class<?> type, Type genericType, Annotation[] annotations,
+                        MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream)
+            throws IOException {
+        long start = System.nanoTime();
+        weather.writeTo(entityStream);
+        SERIALIZE.recordSince(start);
+    }
+}
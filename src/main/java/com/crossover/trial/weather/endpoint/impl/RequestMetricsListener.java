@@ -0,0 +1,95 @@
+package com.crossover.trial.weather.endpoint.impl;
+
+import static com.crossover.trial.weather.endpoint.impl.RestWeatherQueryEndpoint.requestMetrics;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.ws.rs.ext.Provider;
+
+import org.glassfish.jersey.server.ContainerResponse;
+import org.glassfish.jersey.server.model.ResourceMethod;
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+
+import com.crossover.trial.weather.endpoint.api.WeatherCollectorEndpoint;
+import com.crossover.trial.weather.endpoint.api.WeatherQueryEndpoint;
+import com.crossover.trial.weather.stats.RequestMetrics;
+
+/**
+ * Times every request from its arrival until its response is written and records it with the endpoint method that
+ * handled it, see {@link RestWeatherQueryEndpoint#metrics()}. A request fails if it is answered with a 4xx or 5xx
+ * status or ends with an exception. Requests that match no endpoint method are not recorded.
+ *
+ * The start time is kept in a per thread cell rather than a request property, so timing a request boxes nothing.
+ * The endpoints answer on the thread that received the request; a request finished on another thread is not
+ * recorded.
+ *
+ * @author code test administrator
+ */
+@Provider
+public class RequestMetricsListener implements ApplicationEventListener {
+
+    /** the request being timed on a thread and when it arrived */
+    private static final class Start {
+        Object request;
+
+        long nanos;
+    }
+
+    private static final ThreadLocal<Start> STARTS = ThreadLocal.withInitial(Start::new);
+
+    /** the timers by the interface method that declares the endpoint */
+    private final Map<Method, RequestMetrics.Timer> timers = new ConcurrentHashMap<>();
+
+    /** stateless, shared by all requests */
+    private final RequestEventListener finished = this::finished;
+
+    public RequestMetricsListener() {
+        // registered up front so that every endpoint method is reported, requested or not
+        for (Class<?> api : new Class<?>[] {WeatherCollectorEndpoint.class, WeatherQueryEndpoint.class}) {
+            for (Method method : api.getMethods()) {
+                timers.put(method, requestMetrics.endpoint(name(method)));
+            }
+        }
+    }
+
+    @Override
+    public void onEvent(ApplicationEvent event) {
+    }
+
+    @Override
+    public RequestEventListener onRequest(RequestEvent event) {
+        Start start = STARTS.get();
+        start.request = event.getContainerRequest();
+        start.nanos = System.nanoTime();
+        return finished;
+    }
+
+    private void finished(RequestEvent event) {
+        if (event.getType() != RequestEvent.Type.FINISHED) {
+            return;
+        }
+        ResourceMethod matched = event.getUriInfo().getMatchedResourceMethod();
+        Start start = STARTS.get();
+        if (matched == null || start.request != event.getContainerRequest()) {
+            return;
+        }
+        start.request = null;
+        long nanos = System.nanoTime() - start.nanos;
+        Method method = matched.getInvocable().getDefinitionMethod();
+        RequestMetrics.Timer timer = timers.get(method);
+        if (timer == null) {
+            timer = timers.computeIfAbsent(method, m -> requestMetrics.endpoint(name(m)));
+        }
+        ContainerResponse response = event.getContainerResponse();
+        timer.record(nanos, !event.isSuccess() || response == null || response.getStatus() >= 400);
+    }
+
+    private static String name(Method method) {
+        return method.getDeclaringClass().getSimpleName() + "." + method.getName();
+    }
+}
@@ -1,26 +1,49 @@
 package com.crossover.trial.weather.endpoint.impl;
 
-import static com.crossover.trial.weather.endpoint.impl.RestWeatherQueryEndpoint.airportData;
-import static com.crossover.trial.weather.endpoint.impl.RestWeatherQueryEndpoint.atmosphericInformation;
+import static com.crossover.trial.weather.endpoint.impl.RestWeatherQueryEndpoint.airportStore;
 import static com.crossover.trial.weather.endpoint.impl.RestWeatherQueryEndpoint.findAirportData;
-import static com.crossover.trial.weather.endpoint.impl.RestWeatherQueryEndpoint.getAirportDataIdx;
-
+import static com.crossover.trial.weather.endpoint.impl.RestWeatherQueryEndpoint.queryStatistics;
+import static com.crossover.trial.weather.endpoint.impl.RestWeatherQueryEndpoint.requestMetrics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.core.Response;
 
 import com.crossover.trial.weather.endpoint.api.WeatherCollectorEndpoint;
 import com.crossover.trial.weather.entity.AirportData;
-import com.crossover.trial.weather.entity.AtmosphericInformation;
 import com.crossover.trial.weather.entity.DataPoint;
+import com.crossover.trial.weather.entity.DataPointDecoder;
 import com.crossover.trial.weather.entity.DataPointType;
 import com.crossover.trial.weather.exceptions.WeatherException;
+import com.crossover.trial.weather.persistence.AirportCatalog;
+import com.crossover.trial.weather.persistence.Checkpoint;
+import com.crossover.trial.weather.persistence.Checkpointer;
+import com.crossover.trial.weather.persistence.WriteAheadLog;
+import com.crossover.trial.weather.stats.LatencyHistogram;
+import com.crossover.trial.weather.store.AirportSlot;
+import com.crossover.trial.weather.store.IataCode;
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
 
 /**
  * A REST implementation of the WeatherCollector API. Accessible only to airport weather collection
@@ -29,13 +52,44 @@ import com.google.gson.Gson;
  * @author code test administrator
  */
 
-@Path("/collect")
+@javax.ws.rs.Path("/collect")
 public class RestWeatherCollectorEndpoint implements WeatherCollectorEndpoint {
     private static final Logger LOGGER = Logger.getLogger(RestWeatherCollectorEndpoint.class.getName());
 
     /** shared gson json to object factory */
     private static Gson gson = new Gson();
 
+    /** log of the accepted changes, null unless durability is on */
+    private static volatile WriteAheadLog writeAheadLog;
+
+    /** applies replayed changes without logging them again */
+    private static final WriteAheadLog.Handler REPLAY = new WriteAheadLog.Handler() {
+        @Override
+        public void addAirport(int iataCode, double latitude, double longitude) {
+            airportStore.add(new AirportData(IataCode.decode(iataCode), latitude, longitude));
+        }
+
+        @Override
+        public void removeAirport(int iataCode) {
+            AirportSlot slot = airportStore.remove(IataCode.decode(iataCode));
+            if (slot != null) {
+                queryStatistics.forget(slot);
+            }
+        }
+
+        @Override
+        public void update(int iataCode, DataPointType type, double mean, int first, int second, int third,
+                           int count, long time) {
+            AirportSlot slot = airportStore.slotOfCode(iataCode);
+            if (slot != null && slot.update(type, mean, first, second, third, count, time)) {
+                airportStore.touch(slot, time);
+            }
+        }
+    };
+
+    /** decoding update and catalog bodies */
+    private static final LatencyHistogram PARSE = requestMetrics.stage("parse");
+
     @Override
     public Response ping() {
         return Response.status(Response.Status.OK).entity("ready").build();
@@ -44,25 +98,89 @@ public class RestWeatherCollectorEndpoint implements WeatherCollectorEndpoint {
     @Override
     public Response updateWeather(String iataCode, String pointType, String datapointJson) {
         try {
-            addDataPoint(iataCode, pointType, gson.fromJson(datapointJson, DataPoint.class));
-        } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "context", e);
-             
+            long start = System.nanoTime();
+            DataPointDecoder decoder = DataPointDecoder.forCurrentThread();
+            if (decoder.decode(datapointJson)) {
+                PARSE.recordSince(start);
+                addDataPoint(iataCode, pointType, decoder);
+            } else {
+                DataPoint dp = gson.fromJson(datapointJson, DataPoint.class);
+                PARSE.recordSince(start);
+                addDataPoint(iataCode, pointType, dp);
+            }
+        } catch (WeatherException | JsonParseException e) {
+            LOGGER.log(Level.FINE, "rejected update for " + iataCode + "/" + pointType, e);
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
         }
         return Response.status(Response.Status.OK).build();
     }
 
+    @Override
+    public Response updateWeatherBatch(InputStream batchJson) {
+        List<Map<String, Object>> statuses = new ArrayList<>();
+        Map<AirportSlot, Map<DataPointType, DataPoint>> groups = new IdentityHashMap<>();
+        long start = System.nanoTime();
+        try (JsonReader reader = new JsonReader(new InputStreamReader(batchJson, StandardCharsets.UTF_8))) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                statuses.add(readBatchUpdate(reader, groups));
+            }
+            reader.endArray();
+        } catch (IOException | JsonParseException | IllegalStateException e) {
+            LOGGER.log(Level.FINE, "rejected malformed batch update", e);
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+        }
+        PARSE.recordSince(start);
+
+        long now = System.currentTimeMillis();
+        for (Map.Entry<AirportSlot, Map<DataPointType, DataPoint>> group : groups.entrySet()) {
+            AirportSlot slot = group.getKey();
+            synchronized (slot) {
+                // an airport deleted since the batch was read takes none of its updates
+                if (!slot.updateAll(group.getValue(), now)) {
+                    continue;
+                }
+                for (Map.Entry<DataPointType, DataPoint> point : group.getValue().entrySet()) {
+                    DataPoint dp = point.getValue();
+                    log(slot, point.getKey(), dp.getMean(), dp.getFirst(), dp.getSecond(), dp.getThird(),
+                            dp.getCount(), now);
+                }
+                airportStore.touch(slot, now);
+            }
+        }
+        return Response.status(Response.Status.OK).entity(statuses).build();
+    }
 
     @Override
     public Response getAirports() {
         Set<String> retval = new HashSet<>();
-        for (AirportData ad : airportData) {
-            retval.add(ad.getIata());
+        for (AirportSlot slot : airportStore.slots()) {
+            retval.add(slot.getAirport().getIata());
         }
         return Response.status(Response.Status.OK).entity(retval).build();
     }
 
 
+    @Override
+    public Response importAirports(InputStream airportsDat) {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1 << 16];
+        try {
+            for (int n; (n = airportsDat.read(buffer)) != -1; ) {
+                content.write(buffer, 0, n);
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "rejected unreadable airport catalog", e);
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+        }
+        long start = System.nanoTime();
+        List<AirportData> airports = AirportCatalog.parse(ByteBuffer.wrap(content.toByteArray()),
+                Runtime.getRuntime().availableProcessors());
+        PARSE.recordSince(start);
+        return Response.status(Response.Status.OK)
+                .entity(Collections.singletonMap("imported", importAirports(airports))).build();
+    }
+
     @Override
     public Response getAirport(@PathParam("iata") String iata) {
         AirportData ad = findAirportData(iata);
@@ -72,6 +190,9 @@ public class RestWeatherCollectorEndpoint implements WeatherCollectorEndpoint {
 
     @Override
     public Response addAirport(String iata, String latString, String longString) {
+        if (IataCode.encode(iata) == IataCode.INVALID) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("invalid IATA code " + iata).build();
+        }
         addAirport(iata, Double.valueOf(latString), Double.valueOf(longString));
         return Response.status(Response.Status.OK).build();
     }
@@ -101,75 +222,163 @@ public class RestWeatherCollectorEndpoint implements WeatherCollectorEndpoint {
      * @throws WeatherException if the update can not be completed
      */
     public void addDataPoint(String iataCode, String pointType, DataPoint dp) throws WeatherException {
-        int airportDataIdx = getAirportDataIdx(iataCode);
-        AtmosphericInformation ai = atmosphericInformation.get(airportDataIdx);
-        updateAtmosphericInformation(ai, pointType, dp);
+        updateAtmosphericInformation(slotOf(iataCode), typeOf(pointType), dp, System.currentTimeMillis());
     }
 
     /**
-     * update atmospheric information with the given data point for the given point type
+     * Update the airports weather data with a decoded data point, without building the data point.
      *
-     * @param ai the atmospheric information object to update
-     * @param pointType the data point type as a string
-     * @param dp the actual data point
+     * @param iataCode the 3 letter IATA code
+     * @param pointType the point type {@link DataPointType}
+     * @param decoded the decoder holding the data point fields
+     *
+     * @throws WeatherException if the update can not be completed
      */
-    public void updateAtmosphericInformation(AtmosphericInformation ai, String pointType, DataPoint dp) throws WeatherException {
-
-        updateWind(ai, pointType, dp);
-
-        updateTemperature(ai, pointType, dp);
-
-        updateHumidty(ai, pointType, dp);
-
-        updatePressure(ai, pointType, dp);
-
-        updateCloudcover(ai, pointType, dp);
-
-        updatePrecipitation(ai, pointType, dp);
+    private void addDataPoint(String iataCode, String pointType, DataPointDecoder decoded) throws WeatherException {
+        updateAtmosphericInformation(slotOf(iataCode), typeOf(pointType), decoded.getMean(), decoded.getFirst(),
+                decoded.getSecond(), decoded.getThird(), decoded.getCount(), System.currentTimeMillis());
+    }
 
+    /**
+     * update atmospheric information with a data point given by its fields, for collectors that do not send json
+     *
+     * @param slot the airport to update
+     * @param type the data point type
+     * @param mean the mean of the observations
+     * @param first the 1st quartile
+     * @param second the 2nd quartile
+     * @param third the 3rd quartile
+     * @param count the number of observations
+     * @param time the update time in milliseconds since UTC epoch
+     *
+     * @throws WeatherException if the mean is out of range for the type or the airport was removed
+     */
+    public static void updateAtmosphericInformation(AirportSlot slot, DataPointType type, double mean, int first,
+            int second, int third, int count, long time) throws WeatherException {
+        if (!type.accepts(mean)) {
+            throw new WeatherException("mean " + mean + " out of range for " + type);
+        }
+        // updates of an airport are logged in the order the slot applies them
+        synchronized (slot) {
+            if (!slot.update(type, mean, first, second, third, count, time)) {
+                throw new WeatherException("unknown airport " + slot.getAirport().getIata());
+            }
+            log(slot, type, mean, first, second, third, count, time);
+            airportStore.touch(slot, time);
+        }
     }
 
-     private void updatePrecipitation(AtmosphericInformation ai, String pointType, DataPoint dp) {
-          if (pointType.equalsIgnoreCase(DataPointType.PRECIPITATION.name()) && dp.getMean() >=0 && dp.getMean() < 100) {
-            ai.setPrecipitation(dp);
-            ai.setLastUpdateTime(System.currentTimeMillis());
+    /**
+     * @throws WeatherException if the airport is unknown
+     */
+    private static AirportSlot slotOf(String iataCode) throws WeatherException {
+        AirportSlot slot = airportStore.slot(iataCode);
+        if (slot == null) {
+            throw new WeatherException("unknown airport " + iataCode);
         }
-     }
+        return slot;
+    }
 
-     private void updateCloudcover(AtmosphericInformation ai, String pointType, DataPoint dp) {
-          if (pointType.equalsIgnoreCase(DataPointType.CLOUDCOVER.name()) && dp.getMean() >= 0 && dp.getMean() < 100) {
-            ai.setCloudCover(dp);
-            ai.setLastUpdateTime(System.currentTimeMillis());
+    /**
+     * @throws WeatherException if there is no such data point type
+     */
+    private static DataPointType typeOf(String pointType) throws WeatherException {
+        DataPointType type = DataPointType.fromName(pointType);
+        if (type == null) {
+            throw new WeatherException("unknown data point type " + pointType);
         }
-     }
+        return type;
+    }
 
-     private void updatePressure(AtmosphericInformation ai, String pointType, DataPoint dp) {
-          if (pointType.equalsIgnoreCase(DataPointType.PRESSURE.name()) && dp.getMean() >= 650 && dp.getMean() < 800) {
-            ai.setPressure(dp);
-            ai.setLastUpdateTime(System.currentTimeMillis());
+    /**
+     * Read one update of a batch and file it with the other updates of its airport.
+     *
+     * @param reader positioned at the update
+     * @param groups the valid updates so far by airport, a later update of the same type wins
+     *
+     * @return the status of the update
+     *
+     * @throws IOException if the body can not be read or is not well formed json
+     */
+    private static Map<String, Object> readBatchUpdate(JsonReader reader,
+            Map<AirportSlot, Map<DataPointType, DataPoint>> groups) throws IOException {
+        String iataCode = null;
+        String pointType = null;
+        DataPoint dp = null;
+        String error = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "iata":
+                    iataCode = reader.nextString();
+                    break;
+                case "pointType":
+                    pointType = reader.nextString();
+                    break;
+                case "datapoint":
+                    try {
+                        dp = gson.fromJson(reader, DataPoint.class);
+                    } catch (JsonParseException e) {
+                        error = e.getMessage();
+                    }
+                    break;
+                default:
+                    reader.skipValue();
+            }
         }
-     }
+        reader.endObject();
 
-     private void updateHumidty(AtmosphericInformation ai, String pointType, DataPoint dp) {
-          if (pointType.equalsIgnoreCase(DataPointType.HUMIDTY.name()) && dp.getMean() >= 0 && dp.getMean() < 100) {
-            ai.setHumidity(dp);
-            ai.setLastUpdateTime(System.currentTimeMillis());
+        Map<String, Object> status = new LinkedHashMap<>();
+        try {
+            if (error != null) {
+                throw new WeatherException(error);
+            }
+            AirportSlot slot = slotOf(iataCode);
+            DataPointType type = typeOf(pointType);
+            validate(type, dp);
+            groups.computeIfAbsent(slot, s -> new EnumMap<>(DataPointType.class)).put(type, dp);
+            status.put("status", Response.Status.OK.getStatusCode());
+        } catch (WeatherException e) {
+            status.put("status", Response.Status.BAD_REQUEST.getStatusCode());
+            status.put("error", e.getMessage());
         }
-     }
+        return status;
+    }
 
-     private void updateTemperature(AtmosphericInformation ai, String pointType, DataPoint dp) {
-          if (pointType.equalsIgnoreCase(DataPointType.TEMPERATURE.name()) && dp.getMean() >= -50 && dp.getMean() < 100) {
-            ai.setTemperature(dp);
-            ai.setLastUpdateTime(System.currentTimeMillis());
+    /**
+     * update atmospheric information with the given data point for the given point type
+     *
+     * @param slot the airport to update
+     * @param type the data point type
+     * @param dp the actual data point
+     * @param now the update time in milliseconds since UTC epoch
+     *
+     * @throws WeatherException if the data point is missing or its mean is out of range for the type, or the
+     *         airport was removed
+     */
+    public void updateAtmosphericInformation(AirportSlot slot, DataPointType type, DataPoint dp, long now)
+            throws WeatherException {
+        validate(type, dp);
+        synchronized (slot) {
+            if (!slot.update(type, dp, now)) {
+                throw new WeatherException("unknown airport " + slot.getAirport().getIata());
+            }
+            log(slot, type, dp.getMean(), dp.getFirst(), dp.getSecond(), dp.getThird(), dp.getCount(), now);
+            airportStore.touch(slot, now);
         }
-     }
+    }
 
-     private void updateWind(AtmosphericInformation ai, String pointType, DataPoint dp) {
-          if (pointType.equalsIgnoreCase(DataPointType.WIND.name()) && dp.getMean() >= 0) {
-            ai.setWind(dp);
-            ai.setLastUpdateTime(System.currentTimeMillis());
+    /**
+     * @throws WeatherException if the data point is missing or its mean is out of range for the type
+     */
+    private static void validate(DataPointType type, DataPoint dp) throws WeatherException {
+        if (dp == null) {
+            throw new WeatherException("missing data point");
         }
-     }
+        if (!type.accepts(dp)) {
+            throw new WeatherException("mean " + dp.getMean() + " out of range for " + type);
+        }
+    }
 
     /**
      * Add a new known airport to our list.
@@ -181,17 +390,51 @@ public class RestWeatherCollectorEndpoint implements WeatherCollectorEndpoint {
      * @return the added airport
      */
     public static AirportData addAirport(String iataCode, double latitude, double longitude) {
-        AirportData ad = new AirportData();
-        airportData.add(ad);
-
-        AtmosphericInformation ai = new AtmosphericInformation();
-        atmosphericInformation.add(ai);
-        ad.setIata(iataCode);
-        ad.setLatitude(latitude);
-        ad.setLatitude(longitude);
+        AirportData ad = new AirportData(iataCode, latitude, longitude);
+        // catalog changes are logged in the order the store applies them
+        synchronized (airportStore) {
+            airportStore.add(ad);
+            WriteAheadLog wal = writeAheadLog;
+            if (wal != null) {
+                wal.logAddAirport(IataCode.encode(iataCode), latitude, longitude);
+            }
+        }
         return ad;
     }
     
+    /**
+     * Add or replace many airports, indexing them in one go. Airports already known at the same position are left
+     * alone, so importing the same catalog on every start neither relinks nor logs them again.
+     *
+     * @param airports the airports, a later one wins over an earlier one with the same code
+     * @return the number of distinct airports added or moved
+     */
+    public static int importAirports(List<AirportData> airports) {
+        Map<String, AirportData> latest = new LinkedHashMap<>();
+        for (AirportData airport : airports) {
+            latest.put(airport.getIata(), airport);
+        }
+        synchronized (airportStore) {
+            List<AirportData> changed = new ArrayList<>(latest.size());
+            for (AirportData airport : latest.values()) {
+                AirportData known = findAirportData(airport.getIata());
+                if (known == null || known.getLatitude() != airport.getLatitude()
+                        || known.getLongitude() != airport.getLongitude()) {
+                    changed.add(airport);
+                }
+            }
+            List<AirportSlot> slots = airportStore.addAll(changed);
+            WriteAheadLog wal = writeAheadLog;
+            if (wal != null) {
+                for (AirportSlot slot : slots) {
+                    AirportData ad = slot.getAirport();
+                    wal.logAddAirport(IataCode.encode(ad.getIata()), ad.getLatitude(), ad.getLongitude());
+                }
+            }
+            return slots.size();
+        }
+    }
+
     /**
      * Delete a known airport from our list.
      *
@@ -200,13 +443,67 @@ public class RestWeatherCollectorEndpoint implements WeatherCollectorEndpoint {
      * @return the removed airport
      */
     public static AirportData delAirport(String iataCode) {
-         for(AirportData a: airportData){
-               String iataaux = a.getIata().toString();
-               if(iataaux.equals(iataCode)){
-                    airportData.remove(a); 
-               }
-         }
-         return null;
+        AirportSlot slot;
+        synchronized (airportStore) {
+            slot = airportStore.remove(iataCode);
+            if (slot == null) {
+                return null;
+            }
+            WriteAheadLog wal = writeAheadLog;
+            if (wal != null) {
+                wal.logRemoveAirport(IataCode.encode(iataCode));
+            }
+            // before an addition can reuse the handle
+            queryStatistics.forget(slot);
+        }
+        return slot.getAirport();
+    }
+
+    /**
+     * Rebuild the airports and their weather from the latest checkpoint and the write ahead log, then log every
+     * change accepted from now on. Either may be missing.
+     *
+     * @param checkpoints the checkpoint directory, null if checkpoints are off
+     * @param wal the log, opened before any collector request is served, null if it is off
+     * @return the number of replayed changes
+     * @throws IOException if the checkpoint or the log can not be read
+     */
+    public static long recover(Path checkpoints, WriteAheadLog wal) throws IOException {
+        // start from the dummy airports, so that the recovered state replaces them and not the other way round
+        RestWeatherQueryEndpoint.init();
+        long sequence = 0;
+        Path latest = checkpoints == null ? null : Checkpoint.latest(checkpoints);
+        if (latest != null) {
+            long start = System.nanoTime();
+            sequence = Checkpoint.load(latest, airportStore);
+            LOGGER.info("Loaded " + airportStore.size() + " airports from " + latest + " in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        }
+        long records = wal == null ? 0 : wal.replay(REPLAY, sequence);
+        writeAheadLog = wal;
+        return records;
+    }
+
+    /**
+     * Take checkpoints of the store in the background.
+     *
+     * @param checkpoints the checkpoint directory
+     * @param intervalMillis the milliseconds between checkpoints
+     * @return the running checkpointer
+     * @throws IOException if the directory can not be created
+     */
+    public static Checkpointer startCheckpoints(Path checkpoints, long intervalMillis) throws IOException {
+        Checkpointer checkpointer = new Checkpointer(checkpoints, airportStore, writeAheadLog);
+        checkpointer.start(intervalMillis);
+        return checkpointer;
+    }
+
+    private static void log(AirportSlot slot, DataPointType type, double mean, int first, int second, int third,
+                            int count, long time) {
+        WriteAheadLog wal = writeAheadLog;
+        if (wal != null) {
+            wal.logUpdate(IataCode.encode(slot.getAirport().getIata()), type, mean, first, second, third, count,
+                    time);
+        }
     }
-    
 }
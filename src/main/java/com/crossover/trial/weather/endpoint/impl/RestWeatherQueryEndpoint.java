@@ -1,20 +1,33 @@
 package com.crossover.trial.weather.endpoint.impl;
 
 import static com.crossover.trial.weather.endpoint.impl.RestWeatherCollectorEndpoint.addAirport;
+import static org.apache.commons.lang3.StringUtils.isBlank;
 
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
 import javax.ws.rs.Path;
 import javax.ws.rs.core.Response;
 
+import com.crossover.trial.weather.cache.WeatherQueryCache;
 import com.crossover.trial.weather.endpoint.api.WeatherQueryEndpoint;
 import com.crossover.trial.weather.entity.AirportData;
 import com.crossover.trial.weather.entity.AtmosphericInformation;
-import com.crossover.trial.weather.entity.DataPoint;
+import com.crossover.trial.weather.entity.DataPointType;
+import com.crossover.trial.weather.entity.EncodedInformation;
+import com.crossover.trial.weather.entity.EncodedWeather;
+import com.crossover.trial.weather.stats.LatencyHistogram;
+import com.crossover.trial.weather.stats.QueryStatistics;
+import com.crossover.trial.weather.stats.RequestMetrics;
+import com.crossover.trial.weather.store.AirportSlot;
+import com.crossover.trial.weather.store.AirportStore;
+import com.crossover.trial.weather.store.Coordinates;
+import com.crossover.trial.weather.store.NeighborSets;
+import com.crossover.trial.weather.store.WeatherHistory;
+import com.crossover.trial.weather.store.WeatherRollups;
+import com.crossover.trial.weather.store.WeatherStorage;
 import com.google.gson.Gson;
 
 /**
@@ -30,24 +43,35 @@ public class RestWeatherQueryEndpoint implements WeatherQueryEndpoint {
     /** earth radius in KM */
     public static final double R = 6372.8;
 
+    /** default length of a history window */
+    private static final long HOUR_MILLIS = 3600000L;
+
     /** shared gson json to object factory */
     private static Gson gson = new Gson();
 
-    /** all known airports */
-    protected static List<AirportData> airportData = new ArrayList<>();
-
-    /** atmospheric information for each airport, idx corresponds with airportData */
-    protected static List<AtmosphericInformation> atmosphericInformation = new LinkedList<>();
+    /** all known airports and their atmospheric information */
+    protected static final AirportStore airportStore = new AirportStore(WeatherStorage.fromSystemProperties(),
+            WeatherHistory.fromSystemProperties(), WeatherRollups.fromSystemProperties(),
+            NeighborSets.fromSystemProperties(R));
 
     /**
-     * Internal performance counter to better understand most requested information, this map can be improved but
-     * for now provides the basis for future performance optimizations. Due to the stateless deployment architecture
-     * we don't want to write this to disk, but will pull it off using a REST request and aggregate with other
-     * performance metrics {@link #ping()}
+     * Internal performance counter to better understand most requested information, keyed by airport slot handle.
+     * Due to the stateless deployment architecture we don't want to write this to disk, but will pull it off using
+     * a REST request and aggregate with other performance metrics {@link #ping()}
      */
-    private static Map<AirportData, Integer> requestFrequency = new HashMap<AirportData, Integer>();
+    protected static final QueryStatistics queryStatistics = QueryStatistics.fromSystemProperties();
+
+    /** recent weather query results, see {@link #weather(String, String)} */
+    protected static final WeatherQueryCache queryCache = WeatherQueryCache.fromSystemProperties(airportStore);
+
+    /** request and stage latencies, see {@link #metrics()} */
+    protected static final RequestMetrics requestMetrics = new RequestMetrics();
+
+    /** finding the queried airport and a cached result */
+    private static final LatencyHistogram LOOKUP = requestMetrics.stage("lookup");
 
-    private static Map<Double, Integer> radiusFreq = new HashMap<Double, Integer>();
+    /** finding the airports in the radius */
+    private static final LatencyHistogram SCAN = requestMetrics.stage("scan");
 
     static {
         init();
@@ -61,54 +85,25 @@ public class RestWeatherQueryEndpoint implements WeatherQueryEndpoint {
     public String ping() {
         Map<String, Object> retval = new HashMap<>();
 
-        int datasize = 0;
-        for (AtmosphericInformation ai : atmosphericInformation) {
-            // we only count recent readings
-            if (containInformation(ai) && ai.getLastUpdateTime() > System.currentTimeMillis() - 86400000) {
-                // updated in the last day
-                datasize++;
-            }
-        }
-        retval.put("datasize", datasize);
+        // we only count airports with readings updated in the last day
+        retval.put("datasize", airportStore.freshCount(System.currentTimeMillis()));
 
-        Map<String, Double> freq = new HashMap<>();
         // fraction of queries
-        for (AirportData data : airportData) {
-            double frac = (double)requestFrequency.getOrDefault(data, 0) / requestFrequency.size();
-            freq.put(data.getIata(), frac);
-        }
-        retval.put("iata_freq", freq);
+        retval.put("iata_freq", queryStatistics.fractions(airportStore));
 
-        int m = radiusFreq.keySet().stream()
-                .max(Double::compare)
-                .orElse(1000.0).intValue() + 1;
+        // power of two buckets, see RadiusHistogram
+        retval.put("radius_freq", queryStatistics.radiusHistogram());
 
-        int[] hist = new int[m];
-        for (Map.Entry<Double, Integer> e : radiusFreq.entrySet()) {
-            int i = e.getKey().intValue() % 10;
-            hist[i] += e.getValue();
-        }
-        retval.put("radius_freq", hist);
+        // hits, misses, evictions and size of the query result cache
+        retval.put("cache", queryCache.statistics());
 
         return gson.toJson(retval);
     }
 
-     private boolean containInformation(AtmosphericInformation ai) { 
-        List<DataPoint> listDataPoint = new ArrayList<DataPoint>();
-        if(ai.getCloudCover()!= null) 
-              listDataPoint.add(ai.getCloudCover());
-        if(ai.getHumidity()!= null) 
-              listDataPoint.add(ai.getHumidity());
-        if(ai.getPressure()!= null) 
-              listDataPoint.add(ai.getPressure());
-        if(ai.getPrecipitation()!= null) 
-              listDataPoint.add(ai.getPrecipitation());
-        if(ai.getTemperature()!= null) 
-              listDataPoint.add(ai.getTemperature());
-        if(ai.getWind()!= null) 
-              listDataPoint.add(ai.getWind());
-        return !listDataPoint.isEmpty();                                 
-     }
+    @Override
+    public String metrics() {
+        return requestMetrics.toPrometheus();
+    }
 
     /**
      * Given a query in json format {'iata': CODE, 'radius': km} extracts the requested airport information and
@@ -124,21 +119,105 @@ public class RestWeatherQueryEndpoint implements WeatherQueryEndpoint {
         Double radius = radiusString == null || radiusString.trim().isEmpty() ? 0 : Double.valueOf(radiusString);
         updateRequestFrequency(iata, radius);
 
-        List<AtmosphericInformation> retval = new ArrayList<>();
-        if (radius.equals(0.0)) {
-            int idx = getAirportDataIdx(iata);
-            retval.add(atmosphericInformation.get(idx));
+        long start = System.nanoTime();
+        AirportSlot origin = airportStore.slot(iata);
+        if (origin == null) {
+            LOOKUP.recordSince(start);
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+
+        List<AtmosphericInformation> retval = queryCache.get(origin, radius);
+        LOOKUP.recordSince(start);
+        if (retval == null) {
+            retval = computeWeather(origin, radius);
+        }
+        return Response.status(Response.Status.OK).entity(retval).build();
+    }
+
+    /**
+     * Find the weather in the radius of an airport and offer it to the cache together with the versions it was
+     * computed from. Every version is read before the state it covers, so a concurrent change leaves a result that
+     * is not reused. The result carries the JSON encoding of every airport, see {@link EncodedWeatherWriter}.
+     */
+    private static List<AtmosphericInformation> computeWeather(AirportSlot origin, double radius) {
+        long catalogVersion = airportStore.version();
+        AirportSlot[] slots;
+        if (radius == 0) {
+            slots = new AirportSlot[] {origin};
         } else {
-            AirportData ad = findAirportData(iata);
-            for (int i=0;i< airportData.size(); i++){
-                if (calculateDistance(ad, airportData.get(i)) <= radius && containInformation(atmosphericInformation.get(i))){
-                    retval.add(atmosphericInformation.get(i));
-                }
+            long start = System.nanoTime();
+            int[] handles = airportStore.within(origin, radius, R);
+            slots = new AirportSlot[handles.length];
+            for (int i = 0; i < handles.length; i++) {
+                slots[i] = airportStore.slot(handles[i]);
             }
+            SCAN.recordSince(start);
         }
-        return Response.status(Response.Status.OK).entity(retval).build();
+
+        long[] versions = new long[slots.length];
+        List<EncodedInformation> retval = new ArrayList<>();
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] == null) {
+                continue;
+            }
+            EncodedInformation encoded = slots[i].getEncodedInformation();
+            versions[i] = encoded.getVersion();
+            if (radius == 0 || encoded.getInformation().hasInformation()) {
+                retval.add(encoded);
+            }
+        }
+        WeatherQueryCache.Result result = new WeatherQueryCache.Result(catalogVersion, origin, slots, versions,
+                new EncodedWeather(retval));
+        queryCache.put(origin, radius, result);
+        return result.getValue();
     }
 
+    @Override
+    public Response history(String iata, String pointType, String fromString, String toString) {
+        AirportSlot slot = airportStore.slot(iata);
+        if (slot == null) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        DataPointType type = DataPointType.fromName(pointType);
+        if (type == null) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("unknown data point type " + pointType).build();
+        }
+        long to;
+        long from;
+        try {
+            to = isBlank(toString) ? System.currentTimeMillis() : Long.parseLong(toString.trim());
+            from = isBlank(fromString) ? to - HOUR_MILLIS : Long.parseLong(fromString.trim());
+        } catch (NumberFormatException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+        }
+        return Response.status(Response.Status.OK).entity(slot.history(type, from, to)).build();
+    }
+
+    @Override
+    public Response rollup(String iata, String pointType, String resolutionName, String fromString,
+                           String toString) {
+        AirportSlot slot = airportStore.slot(iata);
+        if (slot == null) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        DataPointType type = DataPointType.fromName(pointType);
+        if (type == null) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("unknown data point type " + pointType).build();
+        }
+        WeatherRollups.Resolution resolution = WeatherRollups.Resolution.fromName(resolutionName);
+        if (resolution == null) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("unknown resolution " + resolutionName).build();
+        }
+        long to;
+        long from;
+        try {
+            to = isBlank(toString) ? System.currentTimeMillis() : Long.parseLong(toString.trim());
+            from = isBlank(fromString) ? Long.MIN_VALUE : Long.parseLong(fromString.trim());
+        } catch (NumberFormatException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+        }
+        return Response.status(Response.Status.OK).entity(slot.rollup(type, resolution, from, to)).build();
+    }
 
     /**
      * Records information about how often requests are made
@@ -147,9 +226,7 @@ public class RestWeatherQueryEndpoint implements WeatherQueryEndpoint {
      * @param radius query radius
      */
     public void updateRequestFrequency(String iata, Double radius) {
-        AirportData airport = findAirportData(iata);
-        requestFrequency.put(airport, requestFrequency.getOrDefault(airport, 0) + 1);
-        radiusFreq.put(radius, radiusFreq.getOrDefault(radius, 0));
+        queryStatistics.record(airportStore.slot(iata), radius);
     }
 
     /**
@@ -159,20 +236,18 @@ public class RestWeatherQueryEndpoint implements WeatherQueryEndpoint {
      * @return airport data or null if not found
      */
     public static AirportData findAirportData(String iataCode) {
-        return airportData.stream()
-            .filter(ap -> ap.getIata().equals(iataCode))
-            .findFirst().orElse(null);
+        AirportSlot slot = airportStore.slot(iataCode);
+        return slot == null ? null : slot.getAirport();
     }
 
     /**
-     * Given an iataCode find the airport data
+     * Given an iataCode find the handle of the airport's slot
      *
      * @param iataCode as a string
-     * @return airport data or null if not found
+     * @return the handle of the airport or -1 if not found
      */
     public static int getAirportDataIdx(String iataCode) {
-        AirportData ad = findAirportData(iataCode);
-        return airportData.indexOf(ad);
+        return airportStore.handleOf(iataCode);
     }
 
     /**
@@ -183,11 +258,9 @@ public class RestWeatherQueryEndpoint implements WeatherQueryEndpoint {
      * @return the distance in KM
      */
     public double calculateDistance(AirportData ad1, AirportData ad2) {
-        double deltaLat = Math.toRadians(ad2.getLatitude() - ad1.getLatitude());
-        double deltaLon = Math.toRadians(ad2.getLongitude() - ad1.getLongitude());
-        double a =  Math.pow(Math.sin(deltaLat / 2), 2) + Math.pow(Math.sin(deltaLon / 2), 2)
-                * Math.cos(ad1.getLatitude()) * Math.cos(ad2.getLatitude());
-        double c = 2 * Math.asin(Math.sqrt(a));
+        double c = Coordinates.centralAngle(
+                ad1.getLatitude(), ad1.getLongitude(), Math.cos(Math.toRadians(ad1.getLatitude())),
+                ad2.getLatitude(), ad2.getLongitude(), Math.cos(Math.toRadians(ad2.getLatitude())));
         return R * c;
     }
 
@@ -195,9 +268,9 @@ public class RestWeatherQueryEndpoint implements WeatherQueryEndpoint {
      * A dummy init method that loads hard coded data
      */
     public static void init() {
-        airportData.clear();
-        atmosphericInformation.clear();
-        requestFrequency.clear();
+        airportStore.clear();
+        queryStatistics.clear();
+        queryCache.clear();
         
         addAirport("BOS", 42.364347, -71.005181);
         addAirport("EWR", 40.6925, -74.168667);
@@ -0,0 +1,69 @@
+package com.crossover.trial.weather.entity;
+
+/**
+ * Summary of the data point means collected in a time bucket.
+ *
+ * @author code test administrator
+ */
+public class Aggregate {
+
+    /** start of the bucket in milliseconds since UTC epoch */
+    private final long start;
+
+    /** length of the bucket in milliseconds */
+    private final long length;
+
+    private final double min;
+
+    private final double max;
+
+    private final double sum;
+
+    private final long count;
+
+    /** the mean of the latest reading in the bucket */
+    private final double last;
+
+    public Aggregate(long start, long length, double min, double max, double sum, long count, double last) {
+        this.start = start;
+        this.length = length;
+        this.min = min;
+        this.max = max;
+        this.sum = sum;
+        this.count = count;
+        this.last = last;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getLast() {
+        return last;
+    }
+
+    /** the mean over the readings in the bucket */
+    public double getMean() {
+        return count == 0 ? 0 : sum / count;
+    }
+}
@@ -2,85 +2,144 @@ package com.crossover.trial.weather.entity;
 
 
 /**
- * encapsulates sensor information for a particular location
+ * encapsulates sensor information for a particular location. Instances are immutable snapshots, an update creates a
+ * new snapshot through one of the with methods.
  */
 public class AtmosphericInformation {
 
     /** temperature in degrees celsius */
-    private DataPoint temperature;
+    private final DataPoint temperature;
 
     /** wind speed in km/h */
-    private DataPoint wind;
+    private final DataPoint wind;
 
     /** humidity in percent */
-    private DataPoint humidity;
+    private final DataPoint humidity;
 
     /** precipitation in cm */
-    private DataPoint precipitation;
+    private final DataPoint precipitation;
 
     /** pressure in mmHg */
-    private DataPoint pressure;
+    private final DataPoint pressure;
 
     /** cloud cover percent from 0 - 100 (integer) */
-    private DataPoint cloudCover;
+    private final DataPoint cloudCover;
 
     /** the last time this data was updated, in milliseconds since UTC epoch */
-    private long lastUpdateTime;
+    private final long lastUpdateTime;
 
     public AtmosphericInformation() {
-
+        this(null, null, null, null, null, null, 0);
     }
 
     protected AtmosphericInformation(DataPoint temperature, DataPoint wind, DataPoint humidity, DataPoint percipitation, DataPoint pressure, DataPoint cloudCover) {
+        this(temperature, wind, humidity, percipitation, pressure, cloudCover, System.currentTimeMillis());
+    }
+
+    public AtmosphericInformation(DataPoint temperature, DataPoint wind, DataPoint humidity, DataPoint precipitation,
+                                  DataPoint pressure, DataPoint cloudCover, long lastUpdateTime) {
         this.temperature = temperature;
         this.wind = wind;
         this.humidity = humidity;
-        this.precipitation = percipitation;
+        this.precipitation = precipitation;
         this.pressure = pressure;
         this.cloudCover = cloudCover;
-        this.lastUpdateTime = System.currentTimeMillis();
+        this.lastUpdateTime = lastUpdateTime;
     }
 
     public DataPoint getTemperature() {
         return temperature;
     }
-    public void setTemperature(DataPoint temperature) {
-        this.temperature = temperature;
+    public AtmosphericInformation withTemperature(DataPoint temperature, long updateTime) {
+        return new AtmosphericInformation(temperature, wind, humidity, precipitation, pressure, cloudCover, updateTime);
     }
     public DataPoint getWind() {
         return wind;
     }
-    public void setWind(DataPoint wind) {
-        this.wind = wind;
+    public AtmosphericInformation withWind(DataPoint wind, long updateTime) {
+        return new AtmosphericInformation(temperature, wind, humidity, precipitation, pressure, cloudCover, updateTime);
     }
     public DataPoint getHumidity() {
         return humidity;
     }
-    public void setHumidity(DataPoint humidity) {
-        this.humidity = humidity;
+    public AtmosphericInformation withHumidity(DataPoint humidity, long updateTime) {
+        return new AtmosphericInformation(temperature, wind, humidity, precipitation, pressure, cloudCover, updateTime);
     }
     public DataPoint getPrecipitation() {
         return precipitation;
     }
-    public void setPrecipitation(DataPoint precipitation) {
-        this.precipitation = precipitation;
+    public AtmosphericInformation withPrecipitation(DataPoint precipitation, long updateTime) {
+        return new AtmosphericInformation(temperature, wind, humidity, precipitation, pressure, cloudCover, updateTime);
     }
     public DataPoint getPressure() {
         return pressure;
     }
-    public void setPressure(DataPoint pressure) {
-        this.pressure = pressure;
+    public AtmosphericInformation withPressure(DataPoint pressure, long updateTime) {
+        return new AtmosphericInformation(temperature, wind, humidity, precipitation, pressure, cloudCover, updateTime);
     }
     public DataPoint getCloudCover() {
         return cloudCover;
     }
-    public void setCloudCover(DataPoint cloudCover) {
-        this.cloudCover = cloudCover;
+    public AtmosphericInformation withCloudCover(DataPoint cloudCover, long updateTime) {
+        return new AtmosphericInformation(temperature, wind, humidity, precipitation, pressure, cloudCover, updateTime);
     }
     public long getLastUpdateTime() {
         return this.lastUpdateTime;
     }
-    public void setLastUpdateTime(long lastUpdateTime) {
-        this.lastUpdateTime = lastUpdateTime;
+
+    /**
+     * @param type the type of the data point
+     * @param dp the new data point
+     * @param updateTime the update time in milliseconds since UTC epoch
+     * @return a copy of this snapshot with the data point of the given type replaced
+     */
+    public AtmosphericInformation with(DataPointType type, DataPoint dp, long updateTime) {
+        switch (type) {
+            case WIND:
+                return withWind(dp, updateTime);
+            case TEMPERATURE:
+                return withTemperature(dp, updateTime);
+            case HUMIDTY:
+                return withHumidity(dp, updateTime);
+            case PRESSURE:
+                return withPressure(dp, updateTime);
+            case CLOUDCOVER:
+                return withCloudCover(dp, updateTime);
+            case PRECIPITATION:
+                return withPrecipitation(dp, updateTime);
+            default:
+                throw new IllegalArgumentException("unknown data point type " + type);
+        }
+    }
+
+    /**
+     * @param type the type of the data point
+     * @return the data point of the given type, null if none has been collected
+     */
+    public DataPoint get(DataPointType type) {
+        switch (type) {
+            case WIND:
+                return wind;
+            case TEMPERATURE:
+                return temperature;
+            case HUMIDTY:
+                return humidity;
+            case PRESSURE:
+                return pressure;
+            case CLOUDCOVER:
+                return cloudCover;
+            case PRECIPITATION:
+                return precipitation;
+            default:
+                throw new IllegalArgumentException("unknown data point type " + type);
+        }
+    }
+
+    /**
+     * @return true if at least one data point has been collected
+     */
+    public boolean hasInformation() {
+        return temperature != null || wind != null || humidity != null || precipitation != null
+                || pressure != null || cloudCover != null;
     }
 }
@@ -0,0 +1,265 @@
+package com.crossover.trial.weather.entity;
+
+/**
+ * Decodes the json form of a {@link DataPoint} into primitive fields without building a reader, tokens or the data
+ * point itself. Only the plain shape collectors send is understood: a flat object whose keys are the DataPoint field
+ * names and whose values are numbers. Anything else makes {@link #decode(CharSequence)} return false, and the caller
+ * should fall back to Gson, which also produces the error message for bad input.
+ *
+ * Decoders are reused, take one with {@link #forCurrentThread()}.
+ *
+ * @author code test administrator
+ */
+public final class DataPointDecoder {
+
+    private static final ThreadLocal<DataPointDecoder> DECODERS = ThreadLocal.withInitial(DataPointDecoder::new);
+
+    /** exact powers of ten for the fast decimal conversion */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15,
+            1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /** decimal digits that always fit a double exactly */
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    private double mean;
+
+    private int first;
+
+    private int second;
+
+    private int third;
+
+    private int count;
+
+    private CharSequence json;
+
+    private int pos;
+
+    private DataPointDecoder() {
+    }
+
+    /**
+     * @return the decoder of the calling thread
+     */
+    public static DataPointDecoder forCurrentThread() {
+        return DECODERS.get();
+    }
+
+    /**
+     * Decode a data point, fields missing from the json are 0 as with Gson.
+     *
+     * @param json the json text
+     * @return true if the data point was decoded, false if the text has to go through Gson
+     */
+    public boolean decode(CharSequence json) {
+        this.json = json;
+        this.pos = 0;
+        mean = 0;
+        first = 0;
+        second = 0;
+        third = 0;
+        count = 0;
+        try {
+            return json != null && object();
+        } finally {
+            this.json = null;
+        }
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public int getFirst() {
+        return first;
+    }
+
+    public int getSecond() {
+        return second;
+    }
+
+    public int getThird() {
+        return third;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    private boolean object() {
+        if (!consume('{')) {
+            return false;
+        }
+        if (!consume('}')) {
+            do {
+                if (!field()) {
+                    return false;
+                }
+            } while (consume(','));
+            if (!consume('}')) {
+                return false;
+            }
+        }
+        skipWhitespace();
+        return pos == json.length();
+    }
+
+    private boolean field() {
+        if (!consume('"')) {
+            return false;
+        }
+        int start = pos;
+        while (pos < json.length() && json.charAt(pos) != '"') {
+            if (json.charAt(pos) == '\\') {
+                return false;
+            }
+            pos++;
+        }
+        int length = pos - start;
+        if (!consume('"') || !consume(':')) {
+            return false;
+        }
+        skipWhitespace();
+        if (matches(start, length, "mean")) {
+            return decimal();
+        }
+        long value = integer();
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            return false;
+        }
+        if (matches(start, length, "first")) {
+            first = (int) value;
+        } else if (matches(start, length, "second")) {
+            second = (int) value;
+        } else if (matches(start, length, "third")) {
+            third = (int) value;
+        } else if (matches(start, length, "count")) {
+            count = (int) value;
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /** @return the integer at the current position, or a value out of int range if there is none */
+    private long integer() {
+        boolean negative = pos < json.length() && json.charAt(pos) == '-';
+        int start = negative ? pos + 1 : pos;
+        int end = digits(start);
+        if (end == start || end - start > 10 || leadingZero(start, end) || !numberEnds(end)) {
+            return Long.MAX_VALUE;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            value = value * 10 + (json.charAt(i) - '0');
+        }
+        pos = end;
+        return negative ? -value : value;
+    }
+
+    private boolean decimal() {
+        int start = pos;
+        boolean negative = pos < json.length() && json.charAt(pos) == '-';
+        int intStart = negative ? pos + 1 : pos;
+        int intEnd = digits(intStart);
+        if (intEnd == intStart || leadingZero(intStart, intEnd)) {
+            return false;
+        }
+        int end = intEnd;
+        int fractionDigits = 0;
+        if (end < json.length() && json.charAt(end) == '.') {
+            int fractionEnd = digits(end + 1);
+            if (fractionEnd == end + 1) {
+                return false;
+            }
+            fractionDigits = fractionEnd - end - 1;
+            end = fractionEnd;
+        }
+        boolean exponent = end < json.length() && (json.charAt(end) == 'e' || json.charAt(end) == 'E');
+        if (exponent || intEnd - intStart + fractionDigits > MAX_EXACT_DIGITS) {
+            // rare in collector input, let the JDK round it
+            if (exponent) {
+                end++;
+                if (end < json.length() && (json.charAt(end) == '+' || json.charAt(end) == '-')) {
+                    end++;
+                }
+                int exponentEnd = digits(end);
+                if (exponentEnd == end) {
+                    return false;
+                }
+                end = exponentEnd;
+            }
+            if (!numberEnds(end)) {
+                return false;
+            }
+            mean = Double.parseDouble(json.subSequence(start, end).toString());
+            pos = end;
+            return true;
+        }
+        if (!numberEnds(end)) {
+            return false;
+        }
+        long digits = 0;
+        for (int i = intStart; i < end; i++) {
+            char c = json.charAt(i);
+            if (c != '.') {
+                digits = digits * 10 + (c - '0');
+            }
+        }
+        // both operands are exact, so the division is correctly rounded
+        double value = digits / POWERS_OF_TEN[fractionDigits];
+        mean = negative ? -value : value;
+        pos = end;
+        return true;
+    }
+
+    private int digits(int from) {
+        int i = from;
+        while (i < json.length() && json.charAt(i) >= '0' && json.charAt(i) <= '9') {
+            i++;
+        }
+        return i;
+    }
+
+    /** json numbers have no leading zeros, Gson decides what to make of them */
+    private boolean leadingZero(int start, int end) {
+        return end - start > 1 && json.charAt(start) == '0';
+    }
+
+    private boolean numberEnds(int at) {
+        if (at == json.length()) {
+            return true;
+        }
+        char c = json.charAt(at);
+        return c == ',' || c == '}' || Character.isWhitespace(c);
+    }
+
+    private boolean matches(int start, int length, String name) {
+        if (length != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (json.charAt(start + i) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean consume(char c) {
+        skipWhitespace();
+        if (pos < json.length() && json.charAt(pos) == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void skipWhitespace() {
+        while (pos < json.length() && Character.isWhitespace(json.charAt(pos))) {
+            pos++;
+        }
+    }
+}
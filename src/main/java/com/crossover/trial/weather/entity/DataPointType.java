@@ -1,15 +1,62 @@
 package com.crossover.trial.weather.entity;
 
+import java.util.Map;
+import java.util.TreeMap;
+
 /**
- * The various types of data points we can collect.
+ * The various types of data points we can collect, each with the range of mean values it accepts.
  *
  * @author code test administrator
  */
 public enum DataPointType {
-    WIND,
-    TEMPERATURE,
-    HUMIDTY,
-    PRESSURE,
-    CLOUDCOVER,
-    PRECIPITATION
+    WIND(0, Double.POSITIVE_INFINITY),
+    TEMPERATURE(-50, 100),
+    HUMIDTY(0, 100),
+    PRESSURE(650, 800),
+    CLOUDCOVER(0, 100),
+    PRECIPITATION(0, 100);
+
+    /** case insensitive name lookup, comparing in place so lookups do not allocate */
+    private static final Map<String, DataPointType> BY_NAME = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    static {
+        for (DataPointType type : values()) {
+            BY_NAME.put(type.name(), type);
+        }
+    }
+
+    /** smallest accepted mean */
+    private final double min;
+
+    /** the accepted means are below this */
+    private final double max;
+
+    DataPointType(double min, double max) {
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * @param dp a data point of this type
+     * @return true if the mean of the data point lies in the accepted range
+     */
+    public boolean accepts(DataPoint dp) {
+        return accepts(dp.getMean());
+    }
+
+    /**
+     * @param mean the mean of a data point of this type
+     * @return true if the mean lies in the accepted range
+     */
+    public boolean accepts(double mean) {
+        return mean >= min && mean < max;
+    }
+
+    /**
+     * @param name a data point type name in any case
+     * @return the type or null if there is no type with that name
+     */
+    public static DataPointType fromName(String name) {
+        return name == null ? null : BY_NAME.get(name);
+    }
 }
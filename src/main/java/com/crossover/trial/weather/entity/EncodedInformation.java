@@ -0,0 +1,85 @@
+package com.crossover.trial.weather.entity;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The atmospheric information of an airport together with its JSON encoding, made when the information changes so
+ * that queries write the bytes instead of serializing the object. The encoding is the one Jackson produces for
+ * {@link AtmosphericInformation}: every property in declaration order, missing data points as null.
+ *
+ * @author code test administrator
+ */
+public final class EncodedInformation {
+
+    /** the version of the slot read before the information */
+    private final long version;
+
+    private final AtmosphericInformation information;
+
+    private final byte[] json;
+
+    /**
+     * @param version the version of the airport read before the information
+     * @param information the information to encode
+     */
+    public EncodedInformation(long version, AtmosphericInformation information) {
+        this.version = version;
+        this.information = information;
+        this.json = encode(information).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public AtmosphericInformation getInformation() {
+        return information;
+    }
+
+    /**
+     * @param out where to write the JSON encoding of the information
+     * @throws IOException if the stream can not be written
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(json);
+    }
+
+    /**
+     * @param ai some atmospheric information
+     * @return the JSON object Jackson writes for it
+     */
+    static String encode(AtmosphericInformation ai) {
+        StringBuilder out = new StringBuilder(256);
+        out.append('{');
+        appendDataPoint(out, "temperature", ai.getTemperature()).append(',');
+        appendDataPoint(out, "wind", ai.getWind()).append(',');
+        appendDataPoint(out, "humidity", ai.getHumidity()).append(',');
+        appendDataPoint(out, "precipitation", ai.getPrecipitation()).append(',');
+        appendDataPoint(out, "pressure", ai.getPressure()).append(',');
+        appendDataPoint(out, "cloudCover", ai.getCloudCover()).append(',');
+        out.append("\"lastUpdateTime\":").append(ai.getLastUpdateTime());
+        return out.append('}').toString();
+    }
+
+    private static StringBuilder appendDataPoint(StringBuilder out, String name, DataPoint dp) {
+        out.append('"').append(name).append("\":");
+        if (dp == null) {
+            return out.append("null");
+        }
+        out.append("{\"mean\":");
+        double mean = dp.getMean();
+        if (Double.isNaN(mean) || Double.isInfinite(mean)) {
+            // as Jackson writes non numbers
+            out.append('"').append(mean).append('"');
+        } else {
+            out.append(mean);
+        }
+        return out.append(",\"first\":").append(dp.getFirst())
+                .append(",\"second\":").append(dp.getSecond())
+                .append(",\"third\":").append(dp.getThird())
+                .append(",\"count\":").append(dp.getCount())
+                .append('}');
+    }
+}
@@ -0,0 +1,49 @@
+package com.crossover.trial.weather.entity;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * An unmodifiable list of atmospheric information that writes itself as a JSON array by concatenating the encodings
+ * of its elements, see {@link EncodedInformation}.
+ *
+ * @author code test administrator
+ */
+public final class EncodedWeather extends AbstractList<AtmosphericInformation> {
+
+    private final EncodedInformation[] elements;
+
+    /**
+     * @param elements the encoded information, in list order
+     */
+    public EncodedWeather(List<EncodedInformation> elements) {
+        this.elements = elements.toArray(new EncodedInformation[elements.size()]);
+    }
+
+    @Override
+    public AtmosphericInformation get(int index) {
+        return elements[index].getInformation();
+    }
+
+    @Override
+    public int size() {
+        return elements.length;
+    }
+
+    /**
+     * @param out where to write the JSON array
+     * @throws IOException if the stream can not be written
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write('[');
+        for (int i = 0; i < elements.length; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            elements[i].writeTo(out);
+        }
+        out.write(']');
+    }
+}
@@ -0,0 +1,27 @@
+package com.crossover.trial.weather.entity;
+
+/**
+ * A data point as it was collected at some time, an entry of the weather history.
+ *
+ * @author code test administrator
+ */
+public class Reading {
+
+    /** the update time in milliseconds since UTC epoch */
+    private final long time;
+
+    private final DataPoint dataPoint;
+
+    public Reading(long time, DataPoint dataPoint) {
+        this.time = time;
+        this.dataPoint = dataPoint;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public DataPoint getDataPoint() {
+        return dataPoint;
+    }
+}
@@ -4,5 +4,12 @@ package com.crossover.trial.weather.exceptions;
  * An internal exception marker
  */
 public class WeatherException extends Exception {
-               
+
+    public WeatherException() {
+
+    }
+
+    public WeatherException(String message) {
+        super(message);
+    }
 }
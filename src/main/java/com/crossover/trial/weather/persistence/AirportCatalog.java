@@ -0,0 +1,181 @@
+package com.crossover.trial.weather.persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.crossover.trial.weather.entity.AirportData;
+import com.crossover.trial.weather.store.IataCode;
+
+/**
+ * Reads airport catalogs in the OpenFlights airports.dat format: one airport per line, comma separated fields that
+ * may be quoted with doubled quotes inside, the IATA code in the fifth field and the latitude and longitude in the
+ * seventh and eighth. Lines without a valid IATA code or coordinates, such as the \N of airports without a code, are
+ * skipped.
+ *
+ * A file is memory mapped and cut into ranges at line ends that are parsed in parallel, only the three fields used
+ * are turned into strings. Airports come out in file order, so a later line for the same code wins as it would when
+ * loaded one by one.
+ *
+ * @author code test administrator
+ */
+public final class AirportCatalog {
+
+    private static final Logger LOGGER = Logger.getLogger(AirportCatalog.class.getName());
+
+    /** system property with a catalog file imported on startup */
+    public static final String FILE_PROPERTY = "weather.airports.file";
+
+    private static final int IATA_FIELD = 4;
+
+    private static final int LATITUDE_FIELD = 6;
+
+    private static final int LONGITUDE_FIELD = 7;
+
+    /** the smallest range worth a task of its own */
+    private static final int MIN_RANGE = 1 << 16;
+
+    private AirportCatalog() {
+    }
+
+    /**
+     * @param file an airports.dat file
+     * @return the airports of the file in file order
+     * @throws IOException if the file can not be read
+     */
+    public static List<AirportData> read(Path file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        return parse(buffer, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param buffer the catalog from its position to its limit, not modified
+     * @param parallelism the most ranges to parse at once
+     * @return the airports in catalog order
+     */
+    public static List<AirportData> parse(ByteBuffer buffer, int parallelism) {
+        int start = buffer.position();
+        int end = buffer.limit();
+        int ranges = Math.max(1, Math.min(parallelism, (end - start) / MIN_RANGE));
+        int[] bounds = new int[ranges + 1];
+        bounds[0] = start;
+        bounds[ranges] = end;
+        for (int i = 1; i < ranges; i++) {
+            bounds[i] = Math.max(bounds[i - 1], nextLine(buffer, start + (int) ((long) (end - start) * i / ranges),
+                    end));
+        }
+
+        List<List<AirportData>> parts = IntStream.range(0, ranges).parallel()
+                .mapToObj(i -> parseRange(buffer, bounds[i], bounds[i + 1]))
+                .collect(Collectors.toList());
+        List<AirportData> airports = new ArrayList<>();
+        for (List<AirportData> part : parts) {
+            airports.addAll(part);
+        }
+        return airports;
+    }
+
+    /**
+     * @param airport an airport
+     * @return the shortest catalog line {@link #parse(ByteBuffer, int)} reads back as the airport, with a line end
+     */
+    public static String format(AirportData airport) {
+        return ",,,,\"" + airport.getIata() + "\",," + airport.getLatitude() + "," + airport.getLongitude() + "\n";
+    }
+
+    /** @return the start of the first line starting after position - 1 */
+    private static int nextLine(ByteBuffer buffer, int position, int end) {
+        int i = position - 1;
+        while (i < end && buffer.get(i) != '\n') {
+            i++;
+        }
+        return Math.min(i + 1, end);
+    }
+
+    private static List<AirportData> parseRange(ByteBuffer buffer, int start, int end) {
+        List<AirportData> airports = new ArrayList<>();
+        StringBuilder field = new StringBuilder(16);
+        int skipped = 0;
+        int position = start;
+        while (position < end) {
+            String iata = null;
+            String latitude = null;
+            String longitude = null;
+            int number = 0;
+            boolean lineEnd = false;
+            while (!lineEnd) {
+                // one field, unquoting it only if it is used
+                boolean used = number == IATA_FIELD || number == LATITUDE_FIELD || number == LONGITUDE_FIELD;
+                field.setLength(0);
+                boolean quoted = position < end && buffer.get(position) == '"';
+                if (quoted) {
+                    position++;
+                }
+                while (position < end) {
+                    byte b = buffer.get(position++);
+                    if (quoted && b == '"') {
+                        if (position < end && buffer.get(position) == '"') {
+                            position++;
+                        } else {
+                            quoted = false;
+                            continue;
+                        }
+                    } else if (!quoted && (b == ',' || b == '\n')) {
+                        lineEnd = b == '\n';
+                        break;
+                    } else if (!quoted && b == '\r') {
+                        continue;
+                    }
+                    if (used) {
+                        field.append((char) (b & 0xff));
+                    }
+                }
+                lineEnd |= position >= end;
+                if (number == IATA_FIELD) {
+                    iata = field.toString();
+                } else if (number == LATITUDE_FIELD) {
+                    latitude = field.toString();
+                } else if (number == LONGITUDE_FIELD) {
+                    longitude = field.toString();
+                }
+                number++;
+            }
+
+            AirportData airport = toAirport(iata, latitude, longitude);
+            if (airport != null) {
+                airports.add(airport);
+            } else if (number > 1) {
+                skipped++;
+            }
+        }
+        if (skipped > 0) {
+            LOGGER.fine("skipped " + skipped + " catalog lines without an IATA code or coordinates");
+        }
+        return airports;
+    }
+
+    private static AirportData toAirport(String iata, String latitude, String longitude) {
+        if (iata == null || longitude == null || IataCode.encode(iata) == IataCode.INVALID) {
+            return null;
+        }
+        try {
+            double lat = Double.parseDouble(latitude);
+            double lon = Double.parseDouble(longitude);
+            if (!(Math.abs(lat) <= 90) || !(Math.abs(lon) <= 180)) {
+                return null;
+            }
+            return new AirportData(iata, lat, lon);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
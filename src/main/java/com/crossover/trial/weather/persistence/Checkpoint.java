@@ -0,0 +1,231 @@
+package com.crossover.trial.weather.persistence;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import com.crossover.trial.weather.entity.AirportData;
+import com.crossover.trial.weather.entity.AtmosphericInformation;
+import com.crossover.trial.weather.entity.DataPoint;
+import com.crossover.trial.weather.entity.DataPointType;
+import com.crossover.trial.weather.store.AirportSlot;
+import com.crossover.trial.weather.store.AirportStore;
+import com.crossover.trial.weather.store.IataCode;
+
+/**
+ * A binary image of the airport catalog and the current weather, written while collectors keep updating and loaded
+ * through a memory mapping on startup. Each airport is read as one consistent snapshot, so the image holds every
+ * change applied before it was started and possibly some applied while it was written; replaying the write ahead log
+ * from the segment the checkpoint was taken at brings it up to date.
+ *
+ * Layout, big endian: magic, version, write ahead log sequence, airport count, then per airport the IATA code,
+ * latitude, longitude, last update time, a bit mask of the data point types present and the mean, first, second,
+ * third and count of each present type in ordinal order; last a CRC32 of everything before it.
+ *
+ * @author code test administrator
+ */
+public final class Checkpoint {
+
+    private static final int MAGIC = 0x57584350;
+
+    private static final int VERSION = 1;
+
+    private static final String PREFIX = "checkpoint-";
+
+    private static final String SUFFIX = ".bin";
+
+    private static final DataPointType[] TYPES = DataPointType.values();
+
+    private Checkpoint() {
+    }
+
+    /**
+     * Write a checkpoint of the store into a directory, replacing nothing until it is complete and on disk. The
+     * directory is forced after the checkpoint is renamed into place, so the checkpoint survives a power loss once
+     * this returns and the write ahead log it covers may be deleted.
+     *
+     * @param store the airports to save
+     * @param sequence the write ahead log segment to replay from after loading the checkpoint
+     * @param directory where checkpoints live
+     * @return the checkpoint file
+     * @throws IOException if the checkpoint can not be written
+     */
+    public static Path write(AirportStore store, long sequence, Path directory) throws IOException {
+        Path file = directory.resolve(String.format("%s%020d%s", PREFIX, sequence, SUFFIX));
+        Path partial = directory.resolve(file.getFileName() + ".tmp");
+        List<AirportSlot> slots = store.slots();
+        try (FileOutputStream stream = new FileOutputStream(partial.toFile())) {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(stream, 1 << 16),
+                    new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sequence);
+            out.writeInt(slots.size());
+            for (AirportSlot slot : slots) {
+                AirportData airport = slot.getAirport();
+                AtmosphericInformation ai = slot.getAtmosphericInformation();
+                out.writeInt(IataCode.encode(airport.getIata()));
+                out.writeDouble(airport.getLatitude());
+                out.writeDouble(airport.getLongitude());
+                out.writeLong(ai.getLastUpdateTime());
+                int present = 0;
+                for (DataPointType type : TYPES) {
+                    if (ai.get(type) != null) {
+                        present |= 1 << type.ordinal();
+                    }
+                }
+                out.writeByte(present);
+                for (DataPointType type : TYPES) {
+                    DataPoint dp = ai.get(type);
+                    if (dp != null) {
+                        out.writeDouble(dp.getMean());
+                        out.writeInt(dp.getFirst());
+                        out.writeInt(dp.getSecond());
+                        out.writeInt(dp.getThird());
+                        out.writeInt(dp.getCount());
+                    }
+                }
+            }
+            out.flush();
+            // the checksum itself is not part of the checked bytes
+            new DataOutputStream(stream).writeInt((int) checked.getChecksum().getValue());
+            stream.getFD().sync();
+        }
+        Files.move(partial, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        syncDirectory(directory);
+        return file;
+    }
+
+    /**
+     * Replace the content of the store with a checkpoint.
+     *
+     * @param file the checkpoint file
+     * @param store the store to fill, cleared first
+     * @return the write ahead log segment to replay from
+     * @throws IOException if the checkpoint can not be read or is damaged
+     */
+    public static long load(Path file, AirportStore store) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.limit() < 24) {
+            throw new IOException("truncated checkpoint " + file);
+        }
+        CRC32 crc = new CRC32();
+        ByteBuffer content = buffer.duplicate();
+        content.limit(buffer.limit() - 4);
+        crc.update(content);
+        if ((int) crc.getValue() != buffer.getInt(buffer.limit() - 4)) {
+            throw new IOException("damaged checkpoint " + file);
+        }
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("not a version " + VERSION + " checkpoint " + file);
+        }
+        long sequence = buffer.getLong();
+        int count = buffer.getInt();
+
+        // the catalog goes in first, in one go, then the weather of each airport
+        List<AirportData> airports = new ArrayList<>(count);
+        int[] offsets = new int[count];
+        for (int i = 0; i < count; i++) {
+            offsets[i] = buffer.position();
+            String iata = IataCode.decode(buffer.getInt());
+            airports.add(new AirportData(iata, buffer.getDouble(), buffer.getDouble()));
+            buffer.position(buffer.position() + 8);
+            int present = buffer.get();
+            buffer.position(buffer.position() + 24 * Integer.bitCount(present));
+        }
+        store.clear();
+        List<AirportSlot> slots = store.addAll(airports);
+        if (slots.size() != count) {
+            throw new IOException("duplicate airports in checkpoint " + file);
+        }
+        for (int i = 0; i < count; i++) {
+            buffer.position(offsets[i] + 20);
+            long time = buffer.getLong();
+            int present = buffer.get();
+            AirportSlot slot = slots.get(i);
+            for (DataPointType type : TYPES) {
+                if ((present & 1 << type.ordinal()) != 0) {
+                    slot.restore(type, buffer.getDouble(), buffer.getInt(), buffer.getInt(), buffer.getInt(),
+                            buffer.getInt(), time);
+                }
+            }
+            if (present != 0) {
+                store.touch(slot, time);
+            }
+        }
+        return sequence;
+    }
+
+    /**
+     * @param directory where checkpoints live
+     * @return the newest checkpoint or null if there is none
+     * @throws IOException if the directory can not be read
+     */
+    public static Path latest(Path directory) throws IOException {
+        List<Path> checkpoints = list(directory);
+        return checkpoints.isEmpty() ? null : checkpoints.get(checkpoints.size() - 1);
+    }
+
+    /**
+     * Delete the checkpoints older than the given one.
+     *
+     * @param directory where checkpoints live
+     * @param keep the checkpoint to keep
+     * @throws IOException if a checkpoint can not be deleted
+     */
+    public static void deleteOlder(Path directory, Path keep) throws IOException {
+        for (Path checkpoint : list(directory)) {
+            if (checkpoint.getFileName().compareTo(keep.getFileName()) < 0) {
+                Files.delete(checkpoint);
+            }
+        }
+    }
+
+    /** @return the checkpoints, oldest first */
+    private static List<Path> list(Path directory) throws IOException {
+        List<Path> paths = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return paths;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path path : stream) {
+                paths.add(path);
+            }
+        }
+        Collections.sort(paths);
+        return paths;
+    }
+
+    /** makes the renames in a directory durable, where the platform can open a directory */
+    private static void syncDirectory(Path directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            // some platforms, Windows among them, can not open a directory as a channel
+            return;
+        }
+        try {
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.crossover.trial.weather.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.crossover.trial.weather.store.AirportStore;
+
+/**
+ * Writes a {@link Checkpoint} of the store periodically on a background thread. Collectors are never paused: each
+ * checkpoint starts a new write ahead log segment, and every change in the older segments was applied to the store
+ * before that, so the checkpoint holds it and the older segments and checkpoints can be deleted once it is on disk.
+ *
+ * Checkpoints go to -Dweather.checkpoint.dir, by default the write ahead log directory, every
+ * -Dweather.checkpoint.interval.s seconds (default 300).
+ *
+ * @author code test administrator
+ */
+public class Checkpointer implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(Checkpointer.class.getName());
+
+    /** system property with the checkpoint directory */
+    public static final String DIRECTORY_PROPERTY = "weather.checkpoint.dir";
+
+    /** system property with the seconds between checkpoints */
+    public static final String INTERVAL_PROPERTY = "weather.checkpoint.interval.s";
+
+    private static final long DEFAULT_INTERVAL_SECONDS = 300;
+
+    private final Path directory;
+
+    private final AirportStore store;
+
+    /** the log truncated by each checkpoint, null if there is none */
+    private final WriteAheadLog wal;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "weather-checkpoint");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public Checkpointer(Path directory, AirportStore store, WriteAheadLog wal) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.store = store;
+        this.wal = wal;
+    }
+
+    /**
+     * @return the checkpoint directory set by the system properties, or null if checkpoints are off
+     */
+    public static Path directoryFromSystemProperties() {
+        String directory = System.getProperty(DIRECTORY_PROPERTY, System.getProperty(WriteAheadLog.DIRECTORY_PROPERTY));
+        return directory == null ? null : Paths.get(directory);
+    }
+
+    /**
+     * @return the milliseconds between checkpoints set by the system properties
+     */
+    public static long intervalFromSystemProperties() {
+        return TimeUnit.SECONDS.toMillis(Long.getLong(INTERVAL_PROPERTY, DEFAULT_INTERVAL_SECONDS));
+    }
+
+    /**
+     * Take checkpoints at a fixed interval from now on.
+     *
+     * @param intervalMillis the milliseconds between checkpoints
+     */
+    public void start(long intervalMillis) {
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                checkpoint();
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "checkpoint failed", e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Take a checkpoint now and delete what it makes redundant.
+     *
+     * @return the checkpoint file
+     * @throws IOException if the checkpoint can not be written
+     */
+    public synchronized Path checkpoint() throws IOException {
+        long sequence = wal == null ? 0 : wal.roll();
+        long start = System.nanoTime();
+        Path file = Checkpoint.write(store, sequence, directory);
+        Checkpoint.deleteOlder(directory, file);
+        // the checkpoint and its directory entry are on disk once written, only then is the log deleted
+        if (wal != null) {
+            wal.truncate(sequence);
+        }
+        LOGGER.fine("checkpoint of " + store.size() + " airports in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        return file;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,441 @@
+package com.crossover.trial.weather.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import com.crossover.trial.weather.entity.DataPointType;
+
+/**
+ * Append only log of the changes accepted by the collector, kept in fixed size memory mapped segment files so that
+ * the state can be rebuilt after a restart. Appending copies a record into the mapped segment and never touches the
+ * disk itself; the operating system writes the pages back, and with the interval fsync policy a background thread
+ * forces everything appended since its last run in one go, a group commit shared by all collectors.
+ *
+ * Records are framed as length, kind, payload and a CRC32 of kind and payload. Replay of a segment stops at the
+ * first record that is incomplete or fails its check, the tail a crash can leave behind, and goes on with the next
+ * segment, which a restart after the crash started.
+ *
+ * Enabled by starting the server with -Dweather.wal.dir=&lt;directory&gt;, see {@link #fromSystemProperties()}.
+ *
+ * @author code test administrator
+ */
+public class WriteAheadLog implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(WriteAheadLog.class.getName());
+
+    /** system property with the log directory, the log is off when it is not set */
+    public static final String DIRECTORY_PROPERTY = "weather.wal.dir";
+
+    /** system property with the segment size in MB, default 64, at most 2047 */
+    public static final String SEGMENT_SIZE_PROPERTY = "weather.wal.segment.mb";
+
+    /** system property with the fsync policy, none or interval (default) */
+    public static final String FSYNC_PROPERTY = "weather.wal.fsync";
+
+    /** system property with the milliseconds between forced writes of the interval policy, default 100 */
+    public static final String FSYNC_INTERVAL_PROPERTY = "weather.wal.fsync.ms";
+
+    /**
+     * When appended records are forced to disk.
+     */
+    public enum FsyncPolicy {
+        /** never, the operating system writes the pages back when it sees fit */
+        NONE,
+        /** by a background thread at a fixed interval, covering every record appended since its last run */
+        INTERVAL
+    }
+
+    /**
+     * Receives the replayed records.
+     */
+    public interface Handler {
+
+        void addAirport(int iataCode, double latitude, double longitude);
+
+        void removeAirport(int iataCode);
+
+        void update(int iataCode, DataPointType type, double mean, int first, int second, int third, int count,
+                    long time);
+    }
+
+    private static final String PREFIX = "wal-";
+
+    private static final String SUFFIX = ".log";
+
+    private static final byte ADD_AIRPORT = 1;
+
+    private static final byte REMOVE_AIRPORT = 2;
+
+    private static final byte UPDATE = 3;
+
+    /** length and checksum around the kind and payload */
+    private static final int FRAME_OVERHEAD = 8;
+
+    /** the largest kind and payload */
+    private static final int MAX_BODY = 64;
+
+    private static final DataPointType[] TYPES = DataPointType.values();
+
+    private final Path directory;
+
+    private final int segmentSize;
+
+    /** the segment being appended to */
+    private MappedByteBuffer segment;
+
+    private long sequence;
+
+    /** records are assembled here to checksum them before they go into the segment */
+    private final ByteBuffer body = ByteBuffer.allocate(MAX_BODY);
+
+    private final CRC32 crc = new CRC32();
+
+    /** full segments the flusher has yet to force */
+    private final List<MappedByteBuffer> unforced = new ArrayList<>();
+
+    /** records appended, compared by the flusher to skip idle runs */
+    private long appended;
+
+    private long forced;
+
+    private final Thread flusher;
+
+    private volatile boolean closed;
+
+    /**
+     * Open the log, appending to a new segment after the existing ones. Call {@link #replay(Handler)} to read what
+     * the existing segments hold.
+     *
+     * @param directory where the segments live, created if missing
+     * @param segmentSize the size of a segment file in bytes
+     * @param policy when to force the appended records to disk
+     * @param intervalMillis the milliseconds between forced writes of the interval policy
+     * @throws IOException if the directory or the first segment can not be created
+     */
+    public WriteAheadLog(Path directory, int segmentSize, FsyncPolicy policy, long intervalMillis) throws IOException {
+        if (segmentSize < FRAME_OVERHEAD + MAX_BODY) {
+            throw new IllegalArgumentException("segment size too small: " + segmentSize);
+        }
+        this.directory = Files.createDirectories(directory);
+        this.segmentSize = segmentSize;
+        List<Path> existing = segments();
+        sequence = existing.isEmpty() ? 0 : sequenceOf(existing.get(existing.size() - 1));
+        segment = map(++sequence);
+
+        if (policy == FsyncPolicy.INTERVAL) {
+            long interval = Math.max(1, intervalMillis);
+            flusher = new Thread(() -> flushEvery(interval), "weather-wal-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        } else {
+            flusher = null;
+        }
+    }
+
+    /**
+     * @return the log configured by the system properties, or null if durability is off
+     * @throws IOException if the log can not be opened
+     * @throws IllegalArgumentException if the segment size is out of range
+     */
+    public static WriteAheadLog fromSystemProperties() throws IOException {
+        String directory = System.getProperty(DIRECTORY_PROPERTY);
+        if (directory == null) {
+            return null;
+        }
+        FsyncPolicy policy = "none".equalsIgnoreCase(System.getProperty(FSYNC_PROPERTY))
+                ? FsyncPolicy.NONE : FsyncPolicy.INTERVAL;
+        // a mapping is limited to Integer.MAX_VALUE bytes
+        long segmentSize = (long) Integer.getInteger(SEGMENT_SIZE_PROPERTY, 64) << 20;
+        if (segmentSize < 1 || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(SEGMENT_SIZE_PROPERTY + " must be between 1 and 2047");
+        }
+        return new WriteAheadLog(Paths.get(directory), (int) segmentSize, policy,
+                Long.getLong(FSYNC_INTERVAL_PROPERTY, 100));
+    }
+
+    /**
+     * Log that an airport was added.
+     *
+     * @param iataCode the airport code as encoded by {@link com.crossover.trial.weather.store.IataCode}
+     * @param latitude in degrees
+     * @param longitude in degrees
+     * @throws UncheckedIOException if a new segment is needed and can not be created
+     */
+    public synchronized void logAddAirport(int iataCode, double latitude, double longitude) {
+        body.clear();
+        body.put(ADD_AIRPORT).putInt(iataCode).putDouble(latitude).putDouble(longitude);
+        append();
+    }
+
+    /**
+     * Log that an airport was removed.
+     *
+     * @param iataCode the airport code as encoded by {@link com.crossover.trial.weather.store.IataCode}
+     * @throws UncheckedIOException if a new segment is needed and can not be created
+     */
+    public synchronized void logRemoveAirport(int iataCode) {
+        body.clear();
+        body.put(REMOVE_AIRPORT).putInt(iataCode);
+        append();
+    }
+
+    /**
+     * Log an accepted data point.
+     *
+     * @param iataCode the airport code as encoded by {@link com.crossover.trial.weather.store.IataCode}
+     * @param type the data point type
+     * @param mean the mean of the observations
+     * @param first the 1st quartile
+     * @param second the 2nd quartile
+     * @param third the 3rd quartile
+     * @param count the number of observations
+     * @param time the update time in milliseconds since UTC epoch
+     * @throws UncheckedIOException if a new segment is needed and can not be created
+     */
+    public synchronized void logUpdate(int iataCode, DataPointType type, double mean, int first, int second,
+                                       int third, int count, long time) {
+        body.clear();
+        body.put(UPDATE).putInt(iataCode).put((byte) type.ordinal()).putDouble(mean)
+                .putInt(first).putInt(second).putInt(third).putInt(count).putLong(time);
+        append();
+    }
+
+    /**
+     * Feed the records of the segments that existed when the log was opened to a handler, oldest first.
+     *
+     * @param handler receives the records
+     * @return the number of records replayed
+     * @throws IOException if a segment can not be read
+     */
+    public long replay(Handler handler) throws IOException {
+        return replay(handler, 0);
+    }
+
+    /**
+     * Feed the records of the segments that existed when the log was opened to a handler, oldest first, starting
+     * with the segment a checkpoint was taken at.
+     *
+     * @param handler receives the records
+     * @param fromSequence the first segment to replay, see {@link #roll()}
+     * @return the number of records replayed
+     * @throws IOException if a segment can not be read
+     */
+    public long replay(Handler handler, long fromSequence) throws IOException {
+        long records = 0;
+        for (Path path : segments()) {
+            if (sequenceOf(path) < fromSequence) {
+                continue;
+            }
+            if (sequenceOf(path) >= sequence) {
+                break;
+            }
+            ByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(path)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            int read = replay(buffer, handler);
+            if (read < 0) {
+                read = -read - 1;
+                LOGGER.warning("damaged record in " + path + " after " + read
+                        + " records, the rest of the segment is skipped");
+            }
+            records += read;
+        }
+        return records;
+    }
+
+    /**
+     * Start a new segment, every record appended before the call is in an older segment.
+     *
+     * @return the sequence number of the new segment
+     * @throws UncheckedIOException if the segment can not be created
+     */
+    public synchronized long roll() {
+        rotate();
+        return sequence;
+    }
+
+    /**
+     * Delete the segments a checkpoint has made redundant.
+     *
+     * @param beforeSequence the segment the checkpoint was taken at, older segments are deleted
+     * @throws IOException if a segment can not be deleted
+     */
+    public void truncate(long beforeSequence) throws IOException {
+        for (Path path : segments()) {
+            if (sequenceOf(path) >= beforeSequence) {
+                break;
+            }
+            Files.delete(path);
+        }
+    }
+
+    /**
+     * Force everything appended so far to disk.
+     */
+    public void force() {
+        List<MappedByteBuffer> buffers;
+        MappedByteBuffer current;
+        long count;
+        synchronized (this) {
+            buffers = new ArrayList<>(unforced);
+            unforced.clear();
+            current = appended != forced ? segment : null;
+            count = appended;
+        }
+        for (MappedByteBuffer buffer : buffers) {
+            buffer.force();
+        }
+        if (current != null) {
+            current.force();
+        }
+        synchronized (this) {
+            forced = Math.max(forced, count);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        if (flusher != null) {
+            flusher.interrupt();
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        force();
+    }
+
+    /** frame the body and copy it into the segment, called with the lock held */
+    private void append() {
+        if (closed) {
+            throw new IllegalStateException("write ahead log is closed");
+        }
+        body.flip();
+        int length = body.remaining();
+        crc.reset();
+        crc.update(body.array(), 0, length);
+        if (segment.remaining() < length + FRAME_OVERHEAD) {
+            rotate();
+        }
+        segment.putInt(length);
+        segment.put(body);
+        segment.putInt((int) crc.getValue());
+        appended++;
+    }
+
+    private void rotate() {
+        try {
+            MappedByteBuffer next = map(sequence + 1);
+            unforced.add(segment);
+            segment = next;
+            sequence++;
+        } catch (IOException e) {
+            throw new UncheckedIOException("can not create write ahead log segment", e);
+        }
+    }
+
+    private MappedByteBuffer map(long number) throws IOException {
+        Path path = directory.resolve(String.format("%s%020d%s", PREFIX, number, SUFFIX));
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(segmentSize);
+            return file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    /** @return the records read, or minus one minus the records read if a damaged record was found */
+    private int replay(ByteBuffer buffer, Handler handler) {
+        byte[] bytes = new byte[MAX_BODY];
+        CRC32 check = new CRC32();
+        int records = 0;
+        while (buffer.remaining() >= FRAME_OVERHEAD) {
+            int length = buffer.getInt();
+            if (length == 0) {
+                // the zero filled rest of the segment
+                return records;
+            }
+            if (length < 0 || length > MAX_BODY || buffer.remaining() < length + 4) {
+                return -records - 1;
+            }
+            buffer.get(bytes, 0, length);
+            check.reset();
+            check.update(bytes, 0, length);
+            if ((int) check.getValue() != buffer.getInt() || !dispatch(ByteBuffer.wrap(bytes, 0, length), handler)) {
+                return -records - 1;
+            }
+            records++;
+        }
+        return records;
+    }
+
+    private static boolean dispatch(ByteBuffer record, Handler handler) {
+        switch (record.get()) {
+            case ADD_AIRPORT:
+                handler.addAirport(record.getInt(), record.getDouble(), record.getDouble());
+                return true;
+            case REMOVE_AIRPORT:
+                handler.removeAirport(record.getInt());
+                return true;
+            case UPDATE:
+                int code = record.getInt();
+                int type = record.get();
+                if (type < 0 || type >= TYPES.length) {
+                    return false;
+                }
+                handler.update(code, TYPES[type], record.getDouble(), record.getInt(), record.getInt(),
+                        record.getInt(), record.getInt(), record.getLong());
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void flushEvery(long intervalMillis) {
+        while (!closed) {
+            try {
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                force();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "write ahead log force failed", e);
+            }
+        }
+    }
+
+    /** @return the segment files, oldest first */
+    private List<Path> segments() throws IOException {
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path path : stream) {
+                paths.add(path);
+            }
+        }
+        Collections.sort(paths);
+        return paths;
+    }
+
+    private static long sequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+}
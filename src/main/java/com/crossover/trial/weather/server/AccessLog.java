@@ -0,0 +1,204 @@
+package com.crossover.trial.weather.server;
+
+import java.io.Closeable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An access log that never blocks the request path: request threads put entries into a bounded lock-free ring and
+ * a background thread hands them to the logger. When the ring is full entries are dropped and counted instead.
+ *
+ * Set with system properties: -Dweather.accesslog.level the level entries are logged at (default INFO, OFF turns
+ * the log off), -Dweather.accesslog.sample to log one in that many requests (default 1, every request) and
+ * -Dweather.accesslog.capacity the ring size (default 8192). Level and sampling can also be changed at runtime.
+ * When the logger does not log the level, requests skip the log after one check.
+ *
+ * @author code test administrator
+ */
+public class AccessLog implements Closeable {
+
+    /** system property with the level of the entries */
+    public static final String LEVEL_PROPERTY = "weather.accesslog.level";
+
+    /** system property with the sampling rate, one in that many requests is logged */
+    public static final String SAMPLE_PROPERTY = "weather.accesslog.sample";
+
+    /** system property with the ring size */
+    public static final String CAPACITY_PROPERTY = "weather.accesslog.capacity";
+
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final Logger logger;
+
+    private final int mask;
+
+    /** per position, the ring sequence it may be written at, or that plus one once written */
+    private final AtomicLongArray sequences;
+
+    private final Level[] levels;
+
+    private final String[] methods;
+
+    private final String[] uris;
+
+    /** the next sequence to claim */
+    private final AtomicLong tail = new AtomicLong();
+
+    /** the next sequence to log, written by the writer thread only */
+    private long head;
+
+    private final LongAdder dropped = new LongAdder();
+
+    private volatile Level level;
+
+    private volatile int sampleRate;
+
+    private volatile boolean closed;
+
+    private final Thread writer;
+
+    /**
+     * @param logger where entries are written
+     * @param level the level of the entries
+     * @param sampleRate one in that many requests is logged
+     * @param capacity the ring size, rounded up to a power of two
+     */
+    public AccessLog(Logger logger, Level level, int sampleRate, int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.logger = logger;
+        this.level = level;
+        setSampleRate(sampleRate);
+        mask = size - 1;
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        levels = new Level[size];
+        methods = new String[size];
+        uris = new String[size];
+        writer = new Thread(this::drainUntilClosed, "weather-access-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * @param logger where entries are written
+     * @return an access log configured by the system properties
+     */
+    public static AccessLog fromSystemProperties(Logger logger) {
+        return new AccessLog(logger, Level.parse(System.getProperty(LEVEL_PROPERTY, "INFO")),
+                Integer.getInteger(SAMPLE_PROPERTY, 1), Integer.getInteger(CAPACITY_PROPERTY, 8192));
+    }
+
+    /**
+     * Log a request, unless it is not sampled, the level is off or the ring is full.
+     *
+     * @param method the HTTP method
+     * @param uri the request URI
+     */
+    public void record(String method, String uri) {
+        Level current = level;
+        if (current == Level.OFF || !logger.isLoggable(current)) {
+            return;
+        }
+        int rate = sampleRate;
+        if (rate > 1 && ThreadLocalRandom.current().nextInt(rate) != 0) {
+            return;
+        }
+        long position = tail.get();
+        while (true) {
+            int i = (int) position & mask;
+            long available = sequences.get(i) - position;
+            if (available == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    levels[i] = current;
+                    methods[i] = method;
+                    uris[i] = uri;
+                    sequences.lazySet(i, position + 1);
+                    return;
+                }
+                position = tail.get();
+            } else if (available < 0) {
+                // the writer has not caught up with a whole ring
+                dropped.increment();
+                return;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    public void setLevel(Level level) {
+        this.level = level;
+    }
+
+    /**
+     * @param sampleRate one in that many requests is logged, 1 logs all
+     */
+    public void setSampleRate(int sampleRate) {
+        if (sampleRate < 1) {
+            throw new IllegalArgumentException("sample rate must be at least 1");
+        }
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * @return the number of entries dropped because the ring was full
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Stop the writer after it has logged the entries recorded so far.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drainUntilClosed() {
+        while (true) {
+            boolean stopping = closed;
+            if (drain() == 0) {
+                if (stopping) {
+                    return;
+                }
+                LockSupport.parkNanos(this, IDLE_NANOS);
+            }
+        }
+    }
+
+    /** logs the entries written in order, stops at the first claimed but unwritten one */
+    private int drain() {
+        int count = 0;
+        while (true) {
+            int i = (int) head & mask;
+            if (sequences.get(i) != head + 1) {
+                return count;
+            }
+            Level entryLevel = levels[i];
+            String method = methods[i];
+            String uri = uris[i];
+            levels[i] = null;
+            methods[i] = null;
+            uris[i] = null;
+            sequences.lazySet(i, head + mask + 1);
+            head++;
+            count++;
+            logger.log(entryLevel, method + " " + uri);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.crossover.trial.weather.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+import org.glassfish.grizzly.filterchain.FilterChainBuilder;
+import org.glassfish.grizzly.filterchain.TransportFilter;
+import org.glassfish.grizzly.nio.transport.TCPNIOServerConnection;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
+import org.glassfish.grizzly.strategies.SameThreadIOStrategy;
+
+import com.crossover.trial.weather.endpoint.api.BinaryCollectorProtocol;
+import com.crossover.trial.weather.endpoint.impl.BinaryCollectorFilter;
+
+/**
+ * Accepts {@link BinaryCollectorProtocol} connections next to the REST server. Records are applied on the selector
+ * threads, an update never blocks on I/O so handing it to a worker pool would only add a queue.
+ *
+ * @author code test administrator
+ */
+public class BinaryCollectorListener {
+
+    private final TCPNIOTransport transport;
+
+    private final TCPNIOServerConnection connection;
+
+    private BinaryCollectorListener(TCPNIOTransport transport, TCPNIOServerConnection connection) {
+        this.transport = transport;
+        this.connection = connection;
+    }
+
+    /**
+     * Start listening.
+     *
+     * @param host the host name or address to bind
+     * @param port the port to bind, 0 for any free port
+     * @return the running listener
+     * @throws IOException if the port can not be bound
+     */
+    public static BinaryCollectorListener start(String host, int port) throws IOException {
+        FilterChainBuilder filters = FilterChainBuilder.stateless();
+        filters.add(new TransportFilter());
+        filters.add(new BinaryCollectorFilter());
+
+        TCPNIOTransport transport = TCPNIOTransportBuilder.newInstance()
+                .setIOStrategy(SameThreadIOStrategy.getInstance())
+                .setTcpNoDelay(true)
+                .build();
+        transport.setProcessor(filters.build());
+        TCPNIOServerConnection connection = transport.bind(host, port);
+        transport.start();
+        return new BinaryCollectorListener(transport, connection);
+    }
+
+    /**
+     * @return the bound port
+     */
+    public int getPort() {
+        return ((InetSocketAddress) connection.getLocalAddress()).getPort();
+    }
+
+    public void shutdownNow() throws IOException {
+        transport.shutdownNow();
+    }
+}
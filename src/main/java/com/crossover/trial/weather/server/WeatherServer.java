@@ -2,6 +2,10 @@ package com.crossover.trial.weather.server;
 
 import java.io.IOException;
 import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -13,8 +17,14 @@ import org.glassfish.grizzly.http.server.Request;
 import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
 import org.glassfish.jersey.server.ResourceConfig;
 
+import com.crossover.trial.weather.endpoint.api.BinaryCollectorProtocol;
+import com.crossover.trial.weather.endpoint.impl.EncodedWeatherWriter;
+import com.crossover.trial.weather.endpoint.impl.RequestMetricsListener;
 import com.crossover.trial.weather.endpoint.impl.RestWeatherCollectorEndpoint;
 import com.crossover.trial.weather.endpoint.impl.RestWeatherQueryEndpoint;
+import com.crossover.trial.weather.persistence.AirportCatalog;
+import com.crossover.trial.weather.persistence.Checkpointer;
+import com.crossover.trial.weather.persistence.WriteAheadLog;
 
 
 /**
@@ -29,6 +39,8 @@ public class WeatherServer {
 
     private static final String BASE_URL = "http://localhost:9090";
 
+    private static final String BINARY_HOST = "localhost";
+
     private WeatherServer(){
                    
     }
@@ -40,18 +52,73 @@ public class WeatherServer {
             final ResourceConfig resourceConfig = new ResourceConfig();
             resourceConfig.register(RestWeatherCollectorEndpoint.class);
             resourceConfig.register(RestWeatherQueryEndpoint.class);
+            resourceConfig.register(EncodedWeatherWriter.class);
+            resourceConfig.register(RequestMetricsListener.class);
 
             HttpServer server = GrizzlyHttpServerFactory.createHttpServer(URI.create(BASE_URL), resourceConfig, false);
             Runtime.getRuntime().addShutdownHook(new Thread(() -> server.shutdownNow()));
 
+            ExecutorService workers = WorkerPool.fromSystemProperties();
+            if (workers != null) {
+                WorkerPool.apply(server, workers);
+                Runtime.getRuntime().addShutdownHook(new Thread(workers::shutdownNow));
+                LOGGER.info("Handling requests on " + System.getProperty(WorkerPool.PROPERTY) + " workers");
+            }
+
+            // requests are logged off the request threads
+            AccessLog accessLog = AccessLog.fromSystemProperties(LOGGER);
+            Runtime.getRuntime().addShutdownHook(new Thread(accessLog::close));
             HttpServerProbe probe = new HttpServerProbe.Adapter() {
                 public void onRequestReceiveEvent(HttpServerFilter filter, Connection connection, Request request) {
-                               LOGGER.info(request.getRequestURI());                   
+                    accessLog.record(request.getMethod().getMethodString(), request.getRequestURI());
                 }
             };
             server.getServerConfiguration().getMonitoringConfig().getWebServerConfig().addProbes(probe);
 
 
+            // load the saved state before accepting traffic
+            WriteAheadLog wal = WriteAheadLog.fromSystemProperties();
+            Path checkpoints = Checkpointer.directoryFromSystemProperties();
+            if (wal != null || checkpoints != null) {
+                long replayed = RestWeatherCollectorEndpoint.recover(checkpoints, wal);
+                LOGGER.info("Replayed " + replayed + " logged changes");
+            }
+            if (checkpoints != null) {
+                Checkpointer checkpointer = RestWeatherCollectorEndpoint.startCheckpoints(checkpoints,
+                        Checkpointer.intervalFromSystemProperties());
+                Runtime.getRuntime().addShutdownHook(new Thread(checkpointer::close));
+            }
+            if (wal != null) {
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        wal.close();
+                    } catch (IOException e) {
+                        LOGGER.log(Level.WARNING, "write ahead log close failed", e);
+                    }
+                }));
+            }
+
+            String catalog = System.getProperty(AirportCatalog.FILE_PROPERTY);
+            if (catalog != null) {
+                long start = System.nanoTime();
+                int imported = RestWeatherCollectorEndpoint.importAirports(AirportCatalog.read(Paths.get(catalog)));
+                LOGGER.info("Imported " + imported + " airports from " + catalog + " in "
+                        + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+            }
+
+            Integer binaryPort = Integer.getInteger(BinaryCollectorProtocol.PORT_PROPERTY);
+            if (binaryPort != null) {
+                BinaryCollectorListener binary = BinaryCollectorListener.start(BINARY_HOST, binaryPort);
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        binary.shutdownNow();
+                    } catch (IOException e) {
+                        LOGGER.log(Level.WARNING, "binary collector shutdown failed", e);
+                    }
+                }));
+                LOGGER.info("Binary collector listening on " + BINARY_HOST + ":" + binary.getPort());
+            }
+
             // the autograder waits for this output before running automated tests, please don't remove it
             server.start();            
             LOGGER.info("Weather Server started.");
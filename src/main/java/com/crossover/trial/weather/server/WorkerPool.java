@@ -0,0 +1,100 @@
+package com.crossover.trial.weather.server;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.server.NetworkListener;
+
+/**
+ * Selects the executor that runs request handling, set at startup with -Dweather.server.workers:
+ * <ul>
+ * <li>default: Grizzly's own fixed pool sized by the number of processors</li>
+ * <li>fixed:N: a pool of N threads</li>
+ * <li>cached: a pool that starts a thread whenever all threads are busy, so requests blocked on slow clients or
+ * disk never queue behind each other</li>
+ * <li>virtual: a virtual thread per request where the runtime has them, Java 21 and newer; the server is built for
+ * Java 8 so they are looked up at runtime, older runtimes get the cached pool</li>
+ * </ul>
+ *
+ * @author code test administrator
+ */
+public final class WorkerPool {
+
+    private static final Logger LOGGER = Logger.getLogger(WorkerPool.class.getName());
+
+    /** system property with the worker pool */
+    public static final String PROPERTY = "weather.server.workers";
+
+    private WorkerPool() {
+    }
+
+    /**
+     * @return the executor set by the system properties or null for Grizzly's own pool
+     */
+    public static ExecutorService fromSystemProperties() {
+        return create(System.getProperty(PROPERTY, "default"));
+    }
+
+    /**
+     * @param spec default, fixed:N, cached or virtual
+     * @return the executor or null for Grizzly's own pool
+     * @throws IllegalArgumentException if the spec is not known
+     */
+    public static ExecutorService create(String spec) {
+        String pool = spec.trim().toLowerCase();
+        if (pool.equals("default")) {
+            return null;
+        }
+        if (pool.equals("cached")) {
+            return Executors.newCachedThreadPool(threads());
+        }
+        if (pool.equals("virtual")) {
+            try {
+                Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) virtual.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                LOGGER.warning("virtual threads need Java 21 or newer, using a cached pool on "
+                        + System.getProperty("java.version"));
+                return Executors.newCachedThreadPool(threads());
+            }
+        }
+        if (pool.startsWith("fixed:")) {
+            try {
+                int size = Integer.parseInt(pool.substring("fixed:".length()));
+                if (size > 0) {
+                    return Executors.newFixedThreadPool(size, threads());
+                }
+            } catch (NumberFormatException e) {
+                // reported below
+            }
+        }
+        throw new IllegalArgumentException("unknown worker pool " + spec + ", use default, fixed:N, cached or virtual");
+    }
+
+    /**
+     * Run the request handling of every listener of a server on an executor. Must be called before the server is
+     * started; the executor is not shut down with the server.
+     *
+     * @param server the server
+     * @param workers the executor
+     */
+    public static void apply(HttpServer server, ExecutorService workers) {
+        for (NetworkListener listener : server.getListeners()) {
+            listener.getTransport().setWorkerThreadPool(workers);
+        }
+    }
+
+    private static ThreadFactory threads() {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, "weather-worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,93 @@
+package com.crossover.trial.weather.stats;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A Count-Min sketch over integer keys. Estimates never undercount; with width w and depth d an estimate exceeds the
+ * true count by more than 2N/w, N being the total of all counts, with probability at most 2^-d.
+ *
+ * Counters are atomic so concurrent increments are never lost, and the memory use is fixed at construction.
+ *
+ * @author code test administrator
+ */
+public class CountMinSketch {
+
+    private final int depth;
+
+    /** width - 1, the width is a power of two */
+    private final int mask;
+
+    /** depth rows of width counters each */
+    private final AtomicLongArray counters;
+
+    /**
+     * @param depth the number of hash rows
+     * @param width the counters per row, rounded up to a power of two
+     */
+    public CountMinSketch(int depth, int width) {
+        int rounded = Integer.highestOneBit(Math.max(1, width - 1)) << 1;
+        this.depth = depth;
+        this.mask = rounded - 1;
+        this.counters = new AtomicLongArray(depth * rounded);
+    }
+
+    /**
+     * Count one occurrence of a key.
+     *
+     * @param key the key
+     * @return the estimated count of the key after the increment
+     */
+    public long increment(int key) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.incrementAndGet(index(row, key)));
+        }
+        return estimate;
+    }
+
+    /**
+     * @param key the key
+     * @return the estimated count of the key
+     */
+    public long estimate(int key) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.get(index(row, key)));
+        }
+        return estimate;
+    }
+
+    /**
+     * Halve all counters, so that old counts fade out of the estimates. Each counter is halved atomically, an
+     * increment racing with the halving is halved or not.
+     */
+    public void halve() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.updateAndGet(i, count -> count >>> 1);
+        }
+    }
+
+    /**
+     * Reset all counters to zero.
+     */
+    public void clear() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+    }
+
+    private int index(int row, int key) {
+        return row * (mask + 1) + (hash(key, row) & mask);
+    }
+
+    /** murmur3 finalizer over the key mixed with a per row seed */
+    private static int hash(int key, int row) {
+        int h = key ^ (0x9E3779B9 * (row + 1));
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -0,0 +1,113 @@
+package com.crossover.trial.weather.stats;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.crossover.trial.weather.store.AirportSlot;
+import com.crossover.trial.weather.store.AirportStore;
+
+/**
+ * Exact per airport counts: one striped {@link LongAdder} per slot handle. Counting does not lock or allocate once
+ * an airport's counter exists, reports cover every known airport.
+ *
+ * Each counter remembers the slot it counts for, so an airport added under the handle of a removed one starts from
+ * zero even when a query of the removed airport is still in flight.
+ *
+ * @author code test administrator
+ */
+public class ExactFrequencyCounter implements FrequencyCounter {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** the queries of one slot */
+    private static final class Counter {
+        final AirportSlot slot;
+
+        final LongAdder queries = new LongAdder();
+
+        Counter(AirportSlot slot) {
+            this.slot = slot;
+        }
+    }
+
+    /** counters by slot handle, grown and replaced under the instance lock */
+    private volatile Counter[] requests = new Counter[INITIAL_CAPACITY];
+
+    @Override
+    public boolean increment(AirportSlot slot) {
+        Counter counter = counter(slot);
+        if (counter == null) {
+            return false;
+        }
+        counter.queries.increment();
+        return true;
+    }
+
+    /**
+     * @param slot an airport
+     * @return the number of queries counted for the airport
+     */
+    public long count(AirportSlot slot) {
+        Counter counter = find(slot);
+        return counter == null ? 0 : counter.queries.sum();
+    }
+
+    @Override
+    public synchronized long forget(AirportSlot slot) {
+        Counter counter = find(slot);
+        if (counter == null) {
+            return 0;
+        }
+        requests[slot.getHandle()] = null;
+        return counter.queries.sum();
+    }
+
+    @Override
+    public Map<String, Double> fractions(AirportStore store, long total) {
+        Map<String, Double> fractions = new HashMap<>();
+        for (AirportSlot slot : store.slots()) {
+            fractions.put(slot.getAirport().getIata(), total == 0 ? 0 : (double) count(slot) / total);
+        }
+        return fractions;
+    }
+
+    @Override
+    public synchronized void clear() {
+        requests = new Counter[INITIAL_CAPACITY];
+    }
+
+    /** the counter of the slot, null if there is none */
+    private Counter find(AirportSlot slot) {
+        Counter[] current = requests;
+        int handle = slot.getHandle();
+        Counter counter = handle < current.length ? current[handle] : null;
+        return counter != null && counter.slot == slot ? counter : null;
+    }
+
+    private Counter counter(AirportSlot slot) {
+        Counter counter = find(slot);
+        return counter != null ? counter : createCounter(slot);
+    }
+
+    /** a new counter for the slot, null once the airport was removed */
+    private synchronized Counter createCounter(AirportSlot slot) {
+        Counter counter = find(slot);
+        if (counter != null) {
+            return counter;
+        }
+        if (slot.isRemoved()) {
+            return null;
+        }
+        Counter[] current = requests;
+        int handle = slot.getHandle();
+        if (handle >= current.length) {
+            current = Arrays.copyOf(current, Math.max(handle + 1, current.length * 2));
+        }
+        counter = new Counter(slot);
+        current[handle] = counter;
+        requests = current;
+        return counter;
+    }
+}
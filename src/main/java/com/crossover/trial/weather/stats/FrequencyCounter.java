@@ -0,0 +1,44 @@
+package com.crossover.trial.weather.stats;
+
+import java.util.Map;
+
+import com.crossover.trial.weather.store.AirportSlot;
+import com.crossover.trial.weather.store.AirportStore;
+
+/**
+ * Counts queries per airport for {@link QueryStatistics}.
+ *
+ * @author code test administrator
+ */
+public interface FrequencyCounter {
+
+    /**
+     * Count one query for an airport.
+     *
+     * @param slot the queried airport
+     * @return false if the query was not counted because the airport was removed
+     */
+    boolean increment(AirportSlot slot);
+
+    /**
+     * Forget the queries of an airport, called when its slot is released.
+     *
+     * @param slot the removed airport
+     * @return the number of queries that were forgotten
+     */
+    long forget(AirportSlot slot);
+
+    /**
+     * Report the share of queries per airport.
+     *
+     * @param store the known airports
+     * @param total the number of queries for known airports
+     * @return IATA code to fraction of all queries
+     */
+    Map<String, Double> fractions(AirportStore store, long total);
+
+    /**
+     * Forget everything.
+     */
+    void clear();
+}
@@ -0,0 +1,159 @@
+package com.crossover.trial.weather.stats;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The k keys with the highest estimated counts, fed with the running estimates of a {@link CountMinSketch}.
+ *
+ * Tracked keys raise their own count with a compare and set, and offers of other keys at or below the smallest
+ * tracked count are rejected with a single volatile read. Only a key that can enter the top k takes the lock.
+ *
+ * @author code test administrator
+ */
+public class HeavyHitters {
+
+    /** a tracked key, replaced as a whole when another key takes its place */
+    private static final class Entry {
+        final int key;
+
+        final AtomicLong count;
+
+        Entry(int key, long count) {
+            this.key = key;
+            this.count = new AtomicLong(count);
+        }
+    }
+
+    private final int k;
+
+    /** the tracked keys, copied and republished under the lock when a key enters or leaves */
+    private volatile Entry[] entries = new Entry[0];
+
+    /** smallest tracked count once all k places are taken, offers at or below it can not enter */
+    private volatile long floor = -1;
+
+    /**
+     * @param k the number of keys to track
+     * @throws IllegalArgumentException if k is less than 1
+     */
+    public HeavyHitters(int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("at least one key must be tracked: " + k);
+        }
+        this.k = k;
+    }
+
+    /**
+     * Offer the current estimate of a key.
+     *
+     * @param key the key
+     * @param count its estimated count
+     */
+    public void offer(int key, long count) {
+        for (Entry entry : entries) {
+            if (entry.key == key) {
+                raise(entry.count, count);
+                return;
+            }
+        }
+        if (count > floor) {
+            update(key, count);
+        }
+    }
+
+    /**
+     * Stop tracking a key, its place is taken by the next key offered.
+     *
+     * @param key the key
+     */
+    public synchronized void remove(int key) {
+        Entry[] current = entries;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i].key == key) {
+                Entry[] fewer = Arrays.copyOf(current, current.length - 1);
+                if (i < fewer.length) {
+                    fewer[i] = current[current.length - 1];
+                }
+                entries = fewer;
+                floor = -1;
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the tracked keys and their counts, highest count first
+     */
+    public synchronized Map<Integer, Long> top() {
+        Entry[] current = entries;
+        long[][] order = new long[current.length][];
+        for (int i = 0; i < current.length; i++) {
+            order[i] = new long[] {current[i].key, current[i].count.get()};
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(b[1], a[1]));
+        Map<Integer, Long> top = new LinkedHashMap<>();
+        for (long[] entry : order) {
+            top.put((int) entry[0], entry[1]);
+        }
+        return top;
+    }
+
+    /**
+     * Forget all keys.
+     */
+    public synchronized void clear() {
+        entries = new Entry[0];
+        floor = -1;
+    }
+
+    private synchronized void update(int key, long count) {
+        Entry[] current = entries;
+        int min = 0;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i].key == key) {
+                // entered while this offer waited for the lock
+                raise(current[i].count, count);
+                refreshFloor();
+                return;
+            }
+            if (current[i].count.get() < current[min].count.get()) {
+                min = i;
+            }
+        }
+        if (current.length < k) {
+            Entry[] more = Arrays.copyOf(current, current.length + 1);
+            more[current.length] = new Entry(key, count);
+            entries = more;
+        } else if (count > current[min].count.get()) {
+            Entry[] replaced = current.clone();
+            replaced[min] = new Entry(key, count);
+            entries = replaced;
+        }
+        refreshFloor();
+    }
+
+    /** the floor lags behind counts raised without the lock, which only lets more offers reach the locked check */
+    private void refreshFloor() {
+        Entry[] current = entries;
+        if (current.length < k) {
+            return;
+        }
+        long min = Long.MAX_VALUE;
+        for (Entry entry : current) {
+            min = Math.min(min, entry.count.get());
+        }
+        floor = min;
+    }
+
+    private static void raise(AtomicLong tracked, long count) {
+        long seen;
+        while ((seen = tracked.get()) < count) {
+            if (tracked.compareAndSet(seen, count)) {
+                return;
+            }
+        }
+    }
+}
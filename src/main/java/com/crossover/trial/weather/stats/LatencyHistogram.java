@@ -0,0 +1,165 @@
+package com.crossover.trial.weather.stats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A latency histogram with log-linear buckets in the style of HdrHistogram: values below 128 ns have a bucket each,
+ * every further power of two is split into 128 equal buckets, so a reported value is within 1% of the recorded one.
+ * Values from about a minute up share the last bucket.
+ *
+ * Recording increments one counter of a preallocated array and does not allocate or lock, so it can be called on
+ * every request. Reading sums the buckets without stopping the recorders and may miss values recorded meanwhile.
+ *
+ * @author code test administrator
+ */
+public class LatencyHistogram {
+
+    /** bits of a value kept exactly within its power of two */
+    private static final int SUB_BITS = 7;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    /** the largest power of two with buckets of its own, 2^36 ns is about 69 s */
+    private static final int MAX_EXPONENT = 36;
+
+    /** number of buckets */
+    static final int BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * Record one value.
+     *
+     * @param nanos a duration in nanoseconds, negative durations count as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucket(value));
+        sum.add(value);
+    }
+
+    /**
+     * Record the time since a start.
+     *
+     * @param startNanos the start as returned by {@link System#nanoTime()}
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @return the counts of the buckets, a consistent enough view for reporting
+     */
+    public Snapshot snapshot() {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        return new Snapshot(snapshot, total, sum.sum());
+    }
+
+    /**
+     * Reset all buckets to zero.
+     */
+    public void clear() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        sum.reset();
+    }
+
+    /**
+     * @param nanos a non negative duration in nanoseconds
+     * @return the bucket the duration falls into
+     */
+    static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int shift = exponent - SUB_BITS;
+        return SUB_BUCKETS + (shift << SUB_BITS) + (int) (nanos >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * @param bucket a bucket
+     * @return the largest duration in nanoseconds that falls into the bucket
+     */
+    static long highestValue(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_BUCKETS) >>> SUB_BITS;
+        long sub = SUB_BUCKETS + ((bucket - SUB_BUCKETS) & (SUB_BUCKETS - 1));
+        return ((sub + 1) << shift) - 1;
+    }
+
+    /**
+     * The bucket counts at one point in time.
+     */
+    public static final class Snapshot {
+
+        private final long[] counts;
+
+        private final long count;
+
+        private final long sum;
+
+        Snapshot(long[] counts, long count, long sum) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+        }
+
+        /**
+         * @return the number of recorded values
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return the sum of the recorded values in nanoseconds
+         */
+        public long getSum() {
+            return sum;
+        }
+
+        /**
+         * @param quantile a quantile in [0, 1]
+         * @return the value in nanoseconds that the quantile of the recorded values does not exceed, within the
+         *         bucket resolution, 0 if nothing was recorded
+         */
+        public long valueAt(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return highestValue(i);
+                }
+            }
+            return highestValue(counts.length - 1);
+        }
+
+        /**
+         * @param quantile a quantile in [0, 1]
+         * @return the value of the quantile in seconds
+         */
+        public double secondsAt(double quantile) {
+            return valueAt(quantile) / (double) TimeUnit.SECONDS.toNanos(1);
+        }
+    }
+}
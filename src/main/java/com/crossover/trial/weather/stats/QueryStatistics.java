@@ -0,0 +1,101 @@
+package com.crossover.trial.weather.stats;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.crossover.trial.weather.store.AirportSlot;
+import com.crossover.trial.weather.store.AirportStore;
+
+/**
+ * Counts weather queries per airport and per radius. All counters are striped or atomic, so concurrent queries
+ * never lose counts and recording does not lock.
+ *
+ * Per airport counting is exact by default. Starting the server with -Dweather.stats.frequency=sketch switches to
+ * a bounded memory Count-Min sketch that reports the -Dweather.stats.topk (default 10) most queried airports.
+ *
+ * @author code test administrator
+ */
+public class QueryStatistics {
+
+    /** system property selecting the per airport counting, exact or sketch */
+    public static final String FREQUENCY_PROPERTY = "weather.stats.frequency";
+
+    /** system property with the number of airports reported in sketch mode */
+    public static final String TOP_K_PROPERTY = "weather.stats.topk";
+
+    private static final int DEFAULT_TOP_K = 10;
+
+    private final FrequencyCounter frequency;
+
+    /** queries for known airports */
+    private final LongAdder total = new LongAdder();
+
+    private final RadiusHistogram radii = new RadiusHistogram();
+
+    public QueryStatistics(FrequencyCounter frequency) {
+        this.frequency = frequency;
+    }
+
+    /**
+     * @return statistics with the per airport counting selected by the system properties
+     */
+    public static QueryStatistics fromSystemProperties() {
+        if ("sketch".equalsIgnoreCase(System.getProperty(FREQUENCY_PROPERTY))) {
+            return new QueryStatistics(new SketchFrequencyCounter(Integer.getInteger(TOP_K_PROPERTY, DEFAULT_TOP_K)));
+        }
+        return new QueryStatistics(new ExactFrequencyCounter());
+    }
+
+    /**
+     * Count a query.
+     *
+     * @param slot the queried airport, null if the airport is unknown
+     * @param radius the query radius in km
+     */
+    public void record(AirportSlot slot, double radius) {
+        radii.record(radius);
+        if (slot != null && frequency.increment(slot)) {
+            total.increment();
+        }
+    }
+
+    /**
+     * @param store the known airports
+     * @return IATA code to the fraction of all queries that were made for the airport
+     */
+    public Map<String, Double> fractions(AirportStore store) {
+        return frequency.fractions(store, total.sum());
+    }
+
+    /**
+     * @return the number of queries for known airports
+     */
+    public long total() {
+        return total.sum();
+    }
+
+    /**
+     * @return the radius histogram, see {@link RadiusHistogram}
+     */
+    public long[] radiusHistogram() {
+        return radii.counts();
+    }
+
+    /**
+     * Forget the queries of an airport, called when its slot is released.
+     *
+     * @param slot the removed airport
+     */
+    public void forget(AirportSlot slot) {
+        total.add(-frequency.forget(slot));
+    }
+
+    /**
+     * Forget everything.
+     */
+    public void clear() {
+        frequency.clear();
+        total.reset();
+        radii.clear();
+    }
+}
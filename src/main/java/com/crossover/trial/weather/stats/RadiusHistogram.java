@@ -0,0 +1,63 @@
+package com.crossover.trial.weather.stats;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed size histogram of query radii with power of two buckets: bucket 0 counts radii below 1 km, bucket i counts
+ * radii in [2^(i-1), 2^i) km and the last bucket counts everything beyond half the earth's circumference.
+ *
+ * @author code test administrator
+ */
+public class RadiusHistogram {
+
+    /** number of buckets, the last one starts at 2^15 = 32768 km */
+    public static final int BUCKETS = 17;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+
+    public RadiusHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Count one query.
+     *
+     * @param radius the query radius in km
+     */
+    public void record(double radius) {
+        counts[bucket(radius)].increment();
+    }
+
+    /**
+     * @return the count of every bucket
+     */
+    public long[] counts() {
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts[i].sum();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Reset all buckets to zero.
+     */
+    public void clear() {
+        for (LongAdder count : counts) {
+            count.reset();
+        }
+    }
+
+    /**
+     * @param radius a radius in km
+     * @return the bucket the radius falls into
+     */
+    public static int bucket(double radius) {
+        if (!(radius >= 1)) {
+            return 0;
+        }
+        return Math.min(BUCKETS - 1, Long.SIZE - Long.numberOfLeadingZeros((long) radius));
+    }
+}
@@ -0,0 +1,121 @@
+package com.crossover.trial.weather.stats;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request latencies and error counts per endpoint method, and latencies of the stages inside a request such as
+ * parsing the body or scanning for airports in a radius, kept in {@link LatencyHistogram}s since the server started.
+ * Metrics are registered once by name and then recorded without lookup or allocation.
+ *
+ * {@link #toPrometheus()} reports them in the Prometheus text format as summaries with the 0.5, 0.99 and 0.999
+ * quantiles; the request rate follows from the count of a summary.
+ *
+ * @author code test administrator
+ */
+public class RequestMetrics {
+
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+
+    private final Map<String, Timer> endpoints = new ConcurrentSkipListMap<>();
+
+    private final Map<String, LatencyHistogram> stages = new ConcurrentSkipListMap<>();
+
+    /**
+     * @param name the endpoint method
+     * @return the timer of the endpoint method, created on first use
+     */
+    public Timer endpoint(String name) {
+        return endpoints.computeIfAbsent(name, n -> new Timer());
+    }
+
+    /**
+     * @param name the stage
+     * @return the latencies of the stage, created on first use
+     */
+    public LatencyHistogram stage(String name) {
+        return stages.computeIfAbsent(name, n -> new LatencyHistogram());
+    }
+
+    /**
+     * Reset every metric to zero, keeping the registered names.
+     */
+    public void clear() {
+        for (Timer timer : endpoints.values()) {
+            timer.latency.clear();
+            timer.errors.reset();
+        }
+        for (LatencyHistogram stage : stages.values()) {
+            stage.clear();
+        }
+    }
+
+    /**
+     * @return all metrics in the Prometheus text exposition format
+     */
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder(4096);
+        out.append("# HELP weather_request_duration_seconds Time to handle a request, by endpoint method.\n");
+        out.append("# TYPE weather_request_duration_seconds summary\n");
+        for (Map.Entry<String, Timer> endpoint : endpoints.entrySet()) {
+            summary(out, "weather_request_duration_seconds", "endpoint", endpoint.getKey(),
+                    endpoint.getValue().latency.snapshot());
+        }
+        out.append("# HELP weather_request_errors_total Requests answered with an error status, by endpoint method.\n");
+        out.append("# TYPE weather_request_errors_total counter\n");
+        for (Map.Entry<String, Timer> endpoint : endpoints.entrySet()) {
+            out.append("weather_request_errors_total{endpoint=\"").append(endpoint.getKey()).append("\"} ")
+                    .append(endpoint.getValue().errors.sum()).append('\n');
+        }
+        out.append("# HELP weather_stage_duration_seconds Time spent in a stage of request handling.\n");
+        out.append("# TYPE weather_stage_duration_seconds summary\n");
+        for (Map.Entry<String, LatencyHistogram> stage : stages.entrySet()) {
+            summary(out, "weather_stage_duration_seconds", "stage", stage.getKey(), stage.getValue().snapshot());
+        }
+        return out.toString();
+    }
+
+    private static void summary(StringBuilder out, String metric, String label, String value,
+                                LatencyHistogram.Snapshot snapshot) {
+        for (double quantile : QUANTILES) {
+            out.append(metric).append('{').append(label).append("=\"").append(value).append("\",quantile=\"")
+                    .append(quantile).append("\"} ").append(snapshot.secondsAt(quantile)).append('\n');
+        }
+        out.append(metric).append("_sum{").append(label).append("=\"").append(value).append("\"} ")
+                .append(snapshot.getSum() / 1e9).append('\n');
+        out.append(metric).append("_count{").append(label).append("=\"").append(value).append("\"} ")
+                .append(snapshot.getCount()).append('\n');
+    }
+
+    /**
+     * The latencies and errors of one endpoint method.
+     */
+    public static final class Timer {
+
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        private final LongAdder errors = new LongAdder();
+
+        /**
+         * Record one request.
+         *
+         * @param nanos the time to handle it
+         * @param failed true if it was answered with an error
+         */
+        public void record(long nanos, boolean failed) {
+            latency.record(nanos);
+            if (failed) {
+                errors.increment();
+            }
+        }
+
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.crossover.trial.weather.stats;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.crossover.trial.weather.store.AirportSlot;
+import com.crossover.trial.weather.store.AirportStore;
+import com.crossover.trial.weather.store.IataCode;
+
+/**
+ * Bounded memory per airport counts for large catalogs: a {@link CountMinSketch} keyed by the encoded IATA code
+ * estimates every airport's count and {@link HeavyHitters} tracks the most queried airports. Memory use and report
+ * size do not grow with the number of airports, reports only cover the top k.
+ *
+ * The sketch can not forget a single key, so the queries of a removed airport keep counting towards the total. The
+ * airport leaves the top k though, its place goes to the next airport queried.
+ *
+ * @author code test administrator
+ */
+public class SketchFrequencyCounter implements FrequencyCounter {
+
+    private static final int DEPTH = 4;
+
+    private static final int WIDTH = 4096;
+
+    private final CountMinSketch sketch = new CountMinSketch(DEPTH, WIDTH);
+
+    private final HeavyHitters hitters;
+
+    /**
+     * @param topK the number of airports to report
+     */
+    public SketchFrequencyCounter(int topK) {
+        hitters = new HeavyHitters(topK);
+    }
+
+    @Override
+    public boolean increment(AirportSlot slot) {
+        if (slot.isRemoved()) {
+            return false;
+        }
+        int code = IataCode.encode(slot.getAirport().getIata());
+        hitters.offer(code, sketch.increment(code));
+        return true;
+    }
+
+    @Override
+    public long forget(AirportSlot slot) {
+        hitters.remove(IataCode.encode(slot.getAirport().getIata()));
+        return 0;
+    }
+
+    @Override
+    public Map<String, Double> fractions(AirportStore store, long total) {
+        Map<String, Double> fractions = new HashMap<>();
+        for (Map.Entry<Integer, Long> hitter : hitters.top().entrySet()) {
+            String iata = IataCode.decode(hitter.getKey());
+            if (store.slot(iata) != null) {
+                fractions.put(iata, total == 0 ? 0 : (double) hitter.getValue() / total);
+            }
+        }
+        return fractions;
+    }
+
+    @Override
+    public void clear() {
+        sketch.clear();
+        hitters.clear();
+    }
+}
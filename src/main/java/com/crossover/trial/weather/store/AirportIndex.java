@@ -0,0 +1,100 @@
+package com.crossover.trial.weather.store;
+
+import java.util.Arrays;
+
+/**
+ * IATA keyed index from airport code to slot handle. Readers work on an immutable table published through a
+ * volatile reference and never block; writers are serialized and publish a new table when they are done.
+ *
+ * @author code test administrator
+ */
+public class AirportIndex {
+
+    /** marker for codes without a handle */
+    public static final int NOT_FOUND = -1;
+
+    /** the current table, a direct address map from encoded IATA code to handle, replaced on every change */
+    private volatile int[] table = emptyTable();
+
+    /**
+     * Given an iataCode find the handle
+     *
+     * @param iata the 3 letter airport code
+     * @return the handle or {@link #NOT_FOUND}
+     */
+    public int get(String iata) {
+        int code = IataCode.encode(iata);
+        return code == IataCode.INVALID ? NOT_FOUND : table[code];
+    }
+
+    /**
+     * Given an encoded iataCode find the handle
+     *
+     * @param code the airport code as encoded by {@link IataCode#encode(CharSequence)}
+     * @return the handle or {@link #NOT_FOUND}
+     */
+    public int get(int code) {
+        return code >= 0 && code < IataCode.CODE_SPACE ? table[code] : NOT_FOUND;
+    }
+
+    /**
+     * Map an airport code to a handle, replacing any previous mapping.
+     *
+     * @param iata the 3 letter airport code
+     * @param handle the handle
+     * @throws IllegalArgumentException if the IATA code can not be indexed
+     */
+    public synchronized void put(String iata, int handle) {
+        int code = IataCode.encode(iata);
+        if (code == IataCode.INVALID) {
+            throw new IllegalArgumentException("invalid IATA code: " + iata);
+        }
+        int[] copy = table.clone();
+        copy[code] = handle;
+        table = copy;
+    }
+
+    /**
+     * Map many airport codes to handles, publishing one new table for all of them.
+     *
+     * @param codes the airport codes as encoded by {@link IataCode#encode(CharSequence)}
+     * @param handles the handles, by position in codes
+     * @param count the number of mappings
+     */
+    public synchronized void putAll(int[] codes, int[] handles, int count) {
+        int[] copy = table.clone();
+        for (int i = 0; i < count; i++) {
+            copy[codes[i]] = handles[i];
+        }
+        table = copy;
+    }
+
+    /**
+     * Remove the mapping for an airport code.
+     *
+     * @param iata the 3 letter airport code
+     * @return the handle that was mapped or {@link #NOT_FOUND}
+     */
+    public synchronized int remove(String iata) {
+        int handle = get(iata);
+        if (handle != NOT_FOUND) {
+            int[] copy = table.clone();
+            copy[IataCode.encode(iata)] = NOT_FOUND;
+            table = copy;
+        }
+        return handle;
+    }
+
+    /**
+     * Forget all mappings.
+     */
+    public synchronized void clear() {
+        table = emptyTable();
+    }
+
+    private static int[] emptyTable() {
+        int[] empty = new int[IataCode.CODE_SPACE];
+        Arrays.fill(empty, NOT_FOUND);
+        return empty;
+    }
+}
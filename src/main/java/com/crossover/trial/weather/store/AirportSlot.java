@@ -0,0 +1,245 @@
+package com.crossover.trial.weather.store;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import com.crossover.trial.weather.entity.Aggregate;
+import com.crossover.trial.weather.entity.AirportData;
+import com.crossover.trial.weather.entity.AtmosphericInformation;
+import com.crossover.trial.weather.entity.DataPoint;
+import com.crossover.trial.weather.entity.DataPointType;
+import com.crossover.trial.weather.entity.EncodedInformation;
+import com.crossover.trial.weather.entity.Reading;
+
+/**
+ * A slot in the {@link AirportStore}, holding an airport together with its atmospheric information. The weather
+ * itself lives in the store's {@link WeatherStorage} under the slot handle.
+ *
+ * Weather updates and the removal of the airport take the slot's monitor, so an update that raced a removal either
+ * completes before the store releases the handle or is rejected.
+ *
+ * @author code test administrator
+ */
+public final class AirportSlot {
+
+    private static final AtomicLongFieldUpdater<AirportSlot> VERSION =
+            AtomicLongFieldUpdater.newUpdater(AirportSlot.class, "version");
+
+    private static final AtomicReferenceFieldUpdater<AirportSlot, EncodedInformation> ENCODED =
+            AtomicReferenceFieldUpdater.newUpdater(AirportSlot.class, EncodedInformation.class, "encoded");
+
+    /** the stable handle of this slot, valid until the airport is removed */
+    private final int handle;
+
+    /** where the weather of the airport is kept */
+    private final WeatherStorage weather;
+
+    /** where the recent readings of the airport are kept */
+    private final WeatherHistory history;
+
+    /** where the aggregated readings of the airport are kept */
+    private final WeatherRollups rollups;
+
+    /** the airport occupying the slot, replaced when the airport is added again */
+    private volatile AirportData airport;
+
+    /** changed after every change of the airport or its weather, see {@link #getVersion()} */
+    private volatile long version;
+
+    /** the weather with its JSON encoding, refreshed by every update, see {@link #getEncodedInformation()} */
+    private volatile EncodedInformation encoded;
+
+    /** set under the slot's monitor when the airport is removed, the handle may then belong to another slot */
+    private volatile boolean removed;
+
+    AirportSlot(int handle, AirportData airport, WeatherStorage weather, WeatherHistory history,
+                WeatherRollups rollups) {
+        this.handle = handle;
+        this.airport = airport;
+        this.weather = weather;
+        this.history = history;
+        this.rollups = rollups;
+    }
+
+    public int getHandle() {
+        return handle;
+    }
+
+    public AirportData getAirport() {
+        return airport;
+    }
+
+    void setAirport(AirportData airport) {
+        this.airport = airport;
+        VERSION.incrementAndGet(this);
+    }
+
+    /**
+     * The version changes after every update of the airport or its weather has completed, so a result computed from
+     * the slot is still valid when the version read before computing it is unchanged.
+     *
+     * @return the slot version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return true once the airport was removed from the store, updates of the slot are rejected from then on
+     */
+    public boolean isRemoved() {
+        return removed;
+    }
+
+    /** called by the store under the slot's monitor before it releases the handle */
+    void markRemoved() {
+        removed = true;
+    }
+
+    /**
+     * @return a consistent view of the weather at the airport
+     */
+    public AtmosphericInformation getAtmosphericInformation() {
+        return weather.read(handle);
+    }
+
+    /**
+     * @return the current weather at the airport with its JSON encoding
+     */
+    public EncodedInformation getEncodedInformation() {
+        EncodedInformation current = encoded;
+        return current != null && current.getVersion() == version ? current : encode();
+    }
+
+    /**
+     * @return true if at least one data point has been collected for the airport
+     */
+    public boolean hasInformation() {
+        return weather.hasInformation(handle);
+    }
+
+    /**
+     * Store a data point, replacing the previous data point of the same type.
+     *
+     * @param type the data point type
+     * @param dp the data point
+     * @param time the update time in milliseconds since UTC epoch
+     * @return false if the airport was removed, nothing is stored then
+     */
+    public synchronized boolean update(DataPointType type, DataPoint dp, long time) {
+        if (removed) {
+            return false;
+        }
+        weather.write(handle, type, dp, time);
+        VERSION.incrementAndGet(this);
+        encode();
+        record(type, dp, time);
+        return true;
+    }
+
+    /**
+     * Store a data point given by its fields, replacing the previous data point of the same type.
+     *
+     * @param type the data point type
+     * @param mean the mean of the observations
+     * @param first the 1st quartile
+     * @param second the 2nd quartile
+     * @param third the 3rd quartile
+     * @param count the number of observations
+     * @param time the update time in milliseconds since UTC epoch
+     * @return false if the airport was removed, nothing is stored then
+     */
+    public synchronized boolean update(DataPointType type, double mean, int first, int second, int third, int count,
+                                       long time) {
+        if (removed) {
+            return false;
+        }
+        weather.write(handle, type, mean, first, second, third, count, time);
+        VERSION.incrementAndGet(this);
+        encode();
+        record(type, mean, first, second, third, count, time);
+        return true;
+    }
+
+    /**
+     * Put back a data point from saved state. Unlike the update methods this does not add to the history and
+     * rollups, the reading was added to them when it was first collected.
+     *
+     * @param type the data point type
+     * @param mean the mean of the observations
+     * @param first the 1st quartile
+     * @param second the 2nd quartile
+     * @param third the 3rd quartile
+     * @param count the number of observations
+     * @param time the update time in milliseconds since UTC epoch
+     */
+    public void restore(DataPointType type, double mean, int first, int second, int third, int count, long time) {
+        weather.write(handle, type, mean, first, second, third, count, time);
+        VERSION.incrementAndGet(this);
+    }
+
+    /**
+     * Store several data points as a single update.
+     *
+     * @param points the data points by type
+     * @param time the update time in milliseconds since UTC epoch
+     * @return false if the airport was removed, nothing is stored then
+     */
+    public synchronized boolean updateAll(Map<DataPointType, DataPoint> points, long time) {
+        if (removed) {
+            return false;
+        }
+        weather.writeAll(handle, points, time);
+        VERSION.incrementAndGet(this);
+        encode();
+        for (Map.Entry<DataPointType, DataPoint> point : points.entrySet()) {
+            record(point.getKey(), point.getValue(), time);
+        }
+        return true;
+    }
+
+    /**
+     * @param type the data point type
+     * @param from the start of the window in milliseconds since UTC epoch, inclusive
+     * @param to the end of the window in milliseconds since UTC epoch, inclusive
+     * @return the kept readings of the type within the window, oldest first, see {@link WeatherHistory}
+     */
+    public List<Reading> history(DataPointType type, long from, long to) {
+        return history.read(handle, type, from, to);
+    }
+
+    /**
+     * @param type the data point type
+     * @param resolution the bucket size
+     * @param from the start of the window in milliseconds since UTC epoch
+     * @param to the end of the window in milliseconds since UTC epoch
+     * @return the kept buckets of the type overlapping the window, oldest first, see {@link WeatherRollups}
+     */
+    public List<Aggregate> rollup(DataPointType type, WeatherRollups.Resolution resolution, long from, long to) {
+        return rollups.read(handle, type, resolution, from, to);
+    }
+
+    /** encodes the current weather and keeps the encoding unless a newer one is already kept */
+    private EncodedInformation encode() {
+        EncodedInformation fresh = new EncodedInformation(version, weather.read(handle));
+        EncodedInformation current;
+        do {
+            current = encoded;
+            if (current != null && current.getVersion() >= fresh.getVersion()) {
+                return fresh;
+            }
+        } while (!ENCODED.compareAndSet(this, current, fresh));
+        return fresh;
+    }
+
+    private void record(DataPointType type, DataPoint dp, long time) {
+        record(type, dp.getMean(), dp.getFirst(), dp.getSecond(), dp.getThird(), dp.getCount(), time);
+    }
+
+    private void record(DataPointType type, double mean, int first, int second, int third, int count, long time) {
+        history.append(handle, type, mean, first, second, third, count, time);
+        rollups.add(handle, type, mean, time);
+    }
+}
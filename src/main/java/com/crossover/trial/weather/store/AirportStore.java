@@ -0,0 +1,411 @@
+package com.crossover.trial.weather.store;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.crossover.trial.weather.entity.AirportData;
+
+/**
+ * Slot based store of the known airports and their weather. Every airport gets a stable integer handle that indexes
+ * a densely packed slot array; handles of removed airports go to a free list and are reused by later additions so
+ * the array stays compact.
+ *
+ * Readers never lock, they see slot arrays and index tables that are published through volatile references.
+ * Changes to the catalog are serialized. A removal marks the slot removed under its monitor before the handle is
+ * released, see {@link AirportSlot}, and a reused handle is cleared again before its new slot is published.
+ *
+ * @author code test administrator
+ */
+public class AirportStore {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** IATA code to handle */
+    private final AirportIndex index = new AirportIndex();
+
+    /** position to handle */
+    private final GeoGrid grid = new GeoGrid();
+
+    /** handle to position */
+    private final Coordinates coordinates = new Coordinates(INITIAL_CAPACITY);
+
+    /** airports with recent weather */
+    private final FreshnessTracker freshness = new FreshnessTracker();
+
+    /** the weather by handle */
+    private final WeatherStorage weather;
+
+    /** the recent readings by handle */
+    private final WeatherHistory history;
+
+    /** the aggregated readings by handle */
+    private final WeatherRollups rollups;
+
+    /** the airports within the standard radii of each airport */
+    private final NeighborSets neighbors;
+
+    /** slots by handle, a null entry is a free slot */
+    private volatile AirportSlot[] slots = new AirportSlot[INITIAL_CAPACITY];
+
+    /** one past the highest handle ever handed out, bounds iteration */
+    private volatile int limit;
+
+    /** number of occupied slots */
+    private volatile int size;
+
+    /** stack of handles of removed airports */
+    private int[] freeHandles = new int[INITIAL_CAPACITY];
+
+    private int freeCount;
+
+    /** changed after every change of the catalog, see {@link #version()} */
+    private volatile long version;
+
+    /**
+     * A store with the weather storage, history and rollups selected by the system properties, see
+     * {@link WeatherStorage}, {@link WeatherHistory} and {@link WeatherRollups}, and without {@link NeighborSets},
+     * whose radii depend on the sphere the store is queried with.
+     */
+    public AirportStore() {
+        this(WeatherStorage.fromSystemProperties());
+    }
+
+    public AirportStore(WeatherStorage weather) {
+        this(weather, WeatherHistory.fromSystemProperties());
+    }
+
+    public AirportStore(WeatherStorage weather, WeatherHistory history) {
+        this(weather, history, WeatherRollups.fromSystemProperties());
+    }
+
+    public AirportStore(WeatherStorage weather, WeatherHistory history, WeatherRollups rollups) {
+        this(weather, history, rollups, NeighborSets.none());
+    }
+
+    public AirportStore(WeatherStorage weather, WeatherHistory history, WeatherRollups rollups,
+                        NeighborSets neighbors) {
+        this.neighbors = neighbors;
+        this.weather = weather;
+        this.history = history;
+        this.rollups = rollups;
+    }
+
+    /**
+     * Add an airport with empty atmospheric information. Adding an airport code that is already known replaces the
+     * airport but keeps its handle and weather.
+     *
+     * @param airport the airport to add
+     * @return the slot of the airport
+     * @throws IllegalArgumentException if the IATA code is not a valid 3 character code
+     */
+    public synchronized AirportSlot add(AirportData airport) {
+        int handle = index.get(airport.getIata());
+        if (handle != AirportIndex.NOT_FOUND) {
+            AirportSlot slot = slots[handle];
+            unlinkNeighbors(handle);
+            ungrid(slot);
+            slot.setAirport(airport);
+            locate(handle, airport);
+            linkNeighbors(handle);
+            version++;
+            return slot;
+        }
+        if (IataCode.encode(airport.getIata()) == IataCode.INVALID) {
+            throw new IllegalArgumentException("invalid IATA code: " + airport.getIata());
+        }
+
+        handle = allocateHandle();
+        AirportSlot slot = new AirportSlot(handle, airport, weather, history, rollups);
+        slots[handle] = slot;
+        size++;
+        locate(handle, airport);
+        linkNeighbors(handle);
+        index.put(airport.getIata(), handle);
+        version++;
+        return slot;
+    }
+
+    /**
+     * Add many airports at once, as {@link #add(AirportData)} does but publishing a single new index for all of
+     * them. When a code occurs more than once the last airport wins.
+     *
+     * @param airports the airports to add
+     * @return the slots of the airports, one per distinct code
+     * @throws IllegalArgumentException if an IATA code is not a valid 3 character code, nothing is added then
+     */
+    public synchronized List<AirportSlot> addAll(Collection<AirportData> airports) {
+        Map<String, AirportData> distinct = new LinkedHashMap<>();
+        for (AirportData airport : airports) {
+            if (IataCode.encode(airport.getIata()) == IataCode.INVALID) {
+                throw new IllegalArgumentException("invalid IATA code: " + airport.getIata());
+            }
+            distinct.put(airport.getIata(), airport);
+        }
+
+        List<AirportSlot> added = new ArrayList<>(distinct.size());
+        int[] codes = new int[distinct.size()];
+        int[] handles = new int[distinct.size()];
+        int count = 0;
+        for (AirportData airport : distinct.values()) {
+            if (index.get(airport.getIata()) != AirportIndex.NOT_FOUND) {
+                added.add(add(airport));
+                continue;
+            }
+            int handle = allocateHandle();
+            AirportSlot slot = new AirportSlot(handle, airport, weather, history, rollups);
+            slots[handle] = slot;
+            size++;
+            locate(handle, airport);
+            linkNeighbors(handle);
+            codes[count] = IataCode.encode(airport.getIata());
+            handles[count++] = handle;
+            added.add(slot);
+        }
+        index.putAll(codes, handles, count);
+        version++;
+        return added;
+    }
+
+    /**
+     * Remove an airport, its handle becomes free for reuse.
+     *
+     * @param iata the 3 letter airport code
+     * @return the removed slot or null if the airport was not known
+     */
+    public synchronized AirportSlot remove(String iata) {
+        int handle = index.remove(iata);
+        if (handle == AirportIndex.NOT_FOUND) {
+            return null;
+        }
+        AirportSlot slot = slots[handle];
+        slots[handle] = null;
+        size--;
+        unlinkNeighbors(handle);
+        ungrid(slot);
+        synchronized (slot) {
+            slot.markRemoved();
+            release(handle);
+        }
+        if (freeCount == freeHandles.length) {
+            freeHandles = Arrays.copyOf(freeHandles, freeCount * 2);
+        }
+        freeHandles[freeCount++] = handle;
+        version++;
+        return slot;
+    }
+
+    /**
+     * Forget all airports.
+     */
+    public synchronized void clear() {
+        index.clear();
+        grid.clear();
+        coordinates.clear(INITIAL_CAPACITY);
+        neighbors.clear();
+        freshness.clear();
+        weather.clear();
+        history.clear();
+        rollups.clear();
+        slots = new AirportSlot[INITIAL_CAPACITY];
+        limit = 0;
+        size = 0;
+        freeCount = 0;
+        version++;
+    }
+
+    /**
+     * @param iata the 3 letter airport code
+     * @return the slot of the airport or null if not found
+     */
+    public AirportSlot slot(String iata) {
+        int handle = index.get(iata);
+        return handle == AirportIndex.NOT_FOUND ? null : slots[handle];
+    }
+
+    /**
+     * @param code the airport code as encoded by {@link IataCode#encode(CharSequence)}
+     * @return the slot or null if the airport is unknown
+     */
+    public AirportSlot slotOfCode(int code) {
+        int handle = index.get(code);
+        return handle == AirportIndex.NOT_FOUND ? null : slots[handle];
+    }
+
+    /**
+     * @param handle a slot handle
+     * @return the slot or null if the handle is free
+     */
+    public AirportSlot slot(int handle) {
+        AirportSlot[] current = slots;
+        return handle >= 0 && handle < current.length ? current[handle] : null;
+    }
+
+    /**
+     * @param iata the 3 letter airport code
+     * @return the handle or {@link AirportIndex#NOT_FOUND}
+     */
+    public int handleOf(String iata) {
+        return index.get(iata);
+    }
+
+    /**
+     * Find the airports within the haversine distance of an airport, including the airport itself.
+     *
+     * @param origin the slot at the center of the radius
+     * @param radius the radius, in the unit of sphereRadius
+     * @param sphereRadius the radius of the earth
+     * @return the sorted handles of the airports in range, precomputed and shared for the radii of the
+     *         {@link NeighborSets} so it must not be modified
+     */
+    public int[] within(AirportSlot origin, double radius, double sphereRadius) {
+        int tier = neighbors.tier(radius, sphereRadius);
+        int[] precomputed = tier < 0 ? null : neighbors.get(tier, origin.getHandle());
+        return precomputed != null ? precomputed : scan(origin.getHandle(), origin.getAirport(), radius, sphereRadius);
+    }
+
+    private int[] scan(int handle, AirportData airport, double radius, double sphereRadius) {
+        Coordinates.RadiusFilter filter = coordinates.radiusFilter(handle, radius, sphereRadius);
+        grid.cells(airport.getLatitude(), airport.getLongitude(), radius / sphereRadius, filter::accept);
+        return filter.matches();
+    }
+
+    /**
+     * Record that the weather of an airport was updated.
+     *
+     * @param slot the updated slot
+     * @param time the update time in milliseconds since UTC epoch
+     * @return false if the airport was removed, nothing is recorded then
+     */
+    public boolean touch(AirportSlot slot, long time) {
+        synchronized (slot) {
+            if (slot.isRemoved()) {
+                return false;
+            }
+            freshness.touch(slot.getHandle(), time);
+            return true;
+        }
+    }
+
+    /**
+     * @param now the current time in milliseconds since UTC epoch
+     * @return the number of airports with weather updated within the last day, see {@link FreshnessTracker}
+     */
+    public int freshCount(long now) {
+        return freshness.freshCount(now);
+    }
+
+    /**
+     * The catalog version changes after every add, remove or clear has completed, so a result computed from the
+     * catalog is still valid when the version read before computing it is unchanged.
+     *
+     * @return the catalog version
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * @return one past the highest handle in use, handles below it may be free
+     */
+    public int limit() {
+        return limit;
+    }
+
+    /**
+     * @return the number of known airports
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return a copy of all occupied slots in handle order
+     */
+    public List<AirportSlot> slots() {
+        int end = limit;
+        AirportSlot[] current = slots;
+        List<AirportSlot> occupied = new ArrayList<>(size);
+        for (int handle = 0; handle < end; handle++) {
+            if (current[handle] != null) {
+                occupied.add(current[handle]);
+            }
+        }
+        return occupied;
+    }
+
+    private void locate(int handle, AirportData airport) {
+        coordinates.set(handle, airport.getLatitude(), airport.getLongitude());
+        grid.add(handle, airport.getLatitude(), airport.getLongitude());
+    }
+
+    /** computes the neighbors of a located handle with one scan and adds it to theirs, distances are symmetric */
+    private void linkNeighbors(int handle) {
+        int widest = neighbors.size() - 1;
+        if (widest < 0) {
+            return;
+        }
+        double sphereRadius = neighbors.getSphereRadius();
+        int[] candidates = scan(handle, slots[handle].getAirport(), neighbors.radius(widest), sphereRadius);
+        for (int tier = widest; tier >= 0; tier--) {
+            int[] within = candidates;
+            if (tier != widest) {
+                Coordinates.RadiusFilter filter = coordinates.radiusFilter(handle, neighbors.radius(tier),
+                        sphereRadius);
+                filter.accept(candidates);
+                within = filter.matches();
+            }
+            neighbors.set(tier, handle, within);
+            for (int neighbor : within) {
+                if (neighbor != handle) {
+                    neighbors.insert(tier, neighbor, handle);
+                }
+            }
+        }
+    }
+
+    private void unlinkNeighbors(int handle) {
+        for (int tier = 0; tier < neighbors.size(); tier++) {
+            int[] within = neighbors.get(tier, handle);
+            if (within == null) {
+                continue;
+            }
+            for (int neighbor : within) {
+                if (neighbor != handle) {
+                    neighbors.delete(tier, neighbor, handle);
+                }
+            }
+            neighbors.set(tier, handle, null);
+        }
+    }
+
+    private void ungrid(AirportSlot slot) {
+        AirportData airport = slot.getAirport();
+        grid.remove(slot.getHandle(), airport.getLatitude(), airport.getLongitude());
+    }
+
+    /** forgets the weather and freshness kept under a handle */
+    private void release(int handle) {
+        freshness.forget(handle);
+        weather.release(handle);
+        history.release(handle);
+        rollups.release(handle);
+    }
+
+    private int allocateHandle() {
+        if (freeCount > 0) {
+            int handle = freeHandles[--freeCount];
+            release(handle);
+            return handle;
+        }
+        int handle = limit;
+        if (handle == slots.length) {
+            slots = Arrays.copyOf(slots, handle * 2);
+        }
+        limit = handle + 1;
+        return handle;
+    }
+}
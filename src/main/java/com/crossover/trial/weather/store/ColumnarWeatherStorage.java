@@ -0,0 +1,236 @@
+package com.crossover.trial.weather.store;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+
+import com.crossover.trial.weather.entity.AtmosphericInformation;
+import com.crossover.trial.weather.entity.DataPoint;
+import com.crossover.trial.weather.entity.DataPointType;
+
+/**
+ * Keeps the current data points in primitive columns, one set of mean, first, second, third, count and timestamp
+ * columns per {@link DataPointType}, indexed by slot handle. An airport costs a few dozen bytes in arrays instead of
+ * seven heap objects; {@link AtmosphericInformation} and {@link DataPoint} views are only built when read.
+ *
+ * Columns live in fixed size chunks that never move. Writers take one of a fixed set of striped locks, readers use
+ * optimistic stamps and retry if a writer got in between, so they see a consistent airport without blocking.
+ *
+ * @author code test administrator
+ */
+public class ColumnarWeatherStorage implements WeatherStorage {
+
+    private static final int CHUNK_BITS = 10;
+
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    private static final int STRIPES = 64;
+
+    private static final int TYPES = DataPointType.values().length;
+
+    private static final AtmosphericInformation EMPTY = new AtmosphericInformation();
+
+    private final StampedLock[] locks = new StampedLock[STRIPES];
+
+    private volatile Chunk[] chunks = new Chunk[0];
+
+    public ColumnarWeatherStorage() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new StampedLock();
+        }
+    }
+
+    @Override
+    public AtmosphericInformation read(int handle) {
+        Chunk chunk = chunkOrNull(handle);
+        if (chunk == null) {
+            return EMPTY;
+        }
+        StampedLock lock = lock(handle);
+        int i = handle & (CHUNK_SIZE - 1);
+        long stamp = lock.tryOptimisticRead();
+        AtmosphericInformation ai = chunk.read(i);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                ai = chunk.read(i);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return ai;
+    }
+
+    @Override
+    public boolean hasInformation(int handle) {
+        Chunk chunk = chunkOrNull(handle);
+        if (chunk == null) {
+            return false;
+        }
+        StampedLock lock = lock(handle);
+        int i = handle & (CHUNK_SIZE - 1);
+        long stamp = lock.tryOptimisticRead();
+        boolean updated = chunk.lastUpdate[i] > 0;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                updated = chunk.lastUpdate[i] > 0;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return updated;
+    }
+
+    @Override
+    public void write(int handle, DataPointType type, DataPoint dp, long time) {
+        Chunk chunk = chunk(handle);
+        StampedLock lock = lock(handle);
+        long stamp = lock.writeLock();
+        try {
+            chunk.write(handle & (CHUNK_SIZE - 1), type.ordinal(), dp, time);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void write(int handle, DataPointType type, double mean, int first, int second, int third, int count,
+                      long time) {
+        Chunk chunk = chunk(handle);
+        StampedLock lock = lock(handle);
+        long stamp = lock.writeLock();
+        try {
+            chunk.write(handle & (CHUNK_SIZE - 1), type.ordinal(), mean, first, second, third, count, time);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void writeAll(int handle, Map<DataPointType, DataPoint> points, long time) {
+        Chunk chunk = chunk(handle);
+        StampedLock lock = lock(handle);
+        long stamp = lock.writeLock();
+        try {
+            for (Map.Entry<DataPointType, DataPoint> point : points.entrySet()) {
+                chunk.write(handle & (CHUNK_SIZE - 1), point.getKey().ordinal(), point.getValue(), time);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void release(int handle) {
+        Chunk chunk = chunkOrNull(handle);
+        if (chunk == null) {
+            return;
+        }
+        StampedLock lock = lock(handle);
+        long stamp = lock.writeLock();
+        try {
+            chunk.erase(handle & (CHUNK_SIZE - 1));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        chunks = new Chunk[0];
+    }
+
+    private StampedLock lock(int handle) {
+        return locks[handle & (STRIPES - 1)];
+    }
+
+    private Chunk chunkOrNull(int handle) {
+        Chunk[] directory = chunks;
+        int index = handle >>> CHUNK_BITS;
+        return index < directory.length ? directory[index] : null;
+    }
+
+    private Chunk chunk(int handle) {
+        Chunk chunk = chunkOrNull(handle);
+        return chunk != null ? chunk : addChunk(handle >>> CHUNK_BITS);
+    }
+
+    private synchronized Chunk addChunk(int index) {
+        Chunk[] directory = chunks;
+        if (index >= directory.length) {
+            directory = Arrays.copyOf(directory, index + 1);
+        }
+        if (directory[index] == null) {
+            directory[index] = new Chunk();
+        }
+        chunks = directory;
+        return directory[index];
+    }
+
+    /**
+     * The columns of {@link #CHUNK_SIZE} consecutive handles, the first index of the per type columns is the
+     * {@link DataPointType} ordinal.
+     */
+    private static final class Chunk {
+
+        final long[] lastUpdate = new long[CHUNK_SIZE];
+
+        /** update time of each data point, 0 if there is none */
+        final long[][] time = new long[TYPES][CHUNK_SIZE];
+
+        final double[][] mean = new double[TYPES][CHUNK_SIZE];
+
+        final int[][] first = new int[TYPES][CHUNK_SIZE];
+
+        final int[][] second = new int[TYPES][CHUNK_SIZE];
+
+        final int[][] third = new int[TYPES][CHUNK_SIZE];
+
+        final int[][] count = new int[TYPES][CHUNK_SIZE];
+
+        void write(int i, int type, DataPoint dp, long updateTime) {
+            write(i, type, dp.getMean(), dp.getFirst(), dp.getSecond(), dp.getThird(), dp.getCount(), updateTime);
+        }
+
+        void write(int i, int type, double mean, int first, int second, int third, int count, long updateTime) {
+            this.mean[type][i] = mean;
+            this.first[type][i] = first;
+            this.second[type][i] = second;
+            this.third[type][i] = third;
+            this.count[type][i] = count;
+            time[type][i] = updateTime;
+            lastUpdate[i] = updateTime;
+        }
+
+        void erase(int i) {
+            for (int type = 0; type < TYPES; type++) {
+                time[type][i] = 0;
+            }
+            lastUpdate[i] = 0;
+        }
+
+        AtmosphericInformation read(int i) {
+            if (lastUpdate[i] == 0) {
+                return EMPTY;
+            }
+            return new AtmosphericInformation(
+                    dataPoint(DataPointType.TEMPERATURE.ordinal(), i),
+                    dataPoint(DataPointType.WIND.ordinal(), i),
+                    dataPoint(DataPointType.HUMIDTY.ordinal(), i),
+                    dataPoint(DataPointType.PRECIPITATION.ordinal(), i),
+                    dataPoint(DataPointType.PRESSURE.ordinal(), i),
+                    dataPoint(DataPointType.CLOUDCOVER.ordinal(), i),
+                    lastUpdate[i]);
+        }
+
+        private DataPoint dataPoint(int type, int i) {
+            if (time[type][i] == 0) {
+                return null;
+            }
+            DataPoint dp = new DataPoint(first[type][i], second[type][i], 0, third[type][i], count[type][i]);
+            dp.setMean(mean[type][i]);
+            return dp;
+        }
+    }
+}
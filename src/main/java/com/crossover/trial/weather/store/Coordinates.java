@@ -0,0 +1,221 @@
+package com.crossover.trial.weather.store;
+
+import java.util.Arrays;
+
+/**
+ * Airport positions in primitive columns indexed by slot handle, with the trigonometry needed for distance checks
+ * computed once when the airport is added.
+ *
+ * Besides the degrees and cos(latitude) used by the haversine formula, every position is kept as a unit vector so
+ * that the bulk of a radius check is a squared chord length compared against a precomputed threshold. Only
+ * candidates whose chord falls in a thin band around the threshold are decided by the exact haversine distance,
+ * which keeps the result identical to a plain haversine scan.
+ *
+ * @author code test administrator
+ */
+public class Coordinates {
+
+    /** half width of the band of squared chord lengths decided by the exact haversine distance */
+    private static final double BOUNDARY = 1e-10;
+
+    /** the columns, replaced as a whole when they grow */
+    private volatile Columns columns;
+
+    public Coordinates(int capacity) {
+        columns = new Columns(capacity);
+    }
+
+    /**
+     * Store the position of a handle, growing the columns as needed. Callers serialize writes.
+     *
+     * @param handle the slot handle
+     * @param latitude in degrees
+     * @param longitude in degrees
+     */
+    void set(int handle, double latitude, double longitude) {
+        Columns current = columns;
+        if (handle >= current.capacity()) {
+            current = current.grow(Math.max(handle + 1, current.capacity() * 2));
+        }
+        double latitudeRadians = Math.toRadians(latitude);
+        double longitudeRadians = Math.toRadians(longitude);
+        double cosLatitude = Math.cos(latitudeRadians);
+        current.latitude[handle] = latitude;
+        current.longitude[handle] = longitude;
+        current.cosLatitude[handle] = cosLatitude;
+        current.x[handle] = cosLatitude * Math.cos(longitudeRadians);
+        current.y[handle] = cosLatitude * Math.sin(longitudeRadians);
+        current.z[handle] = Math.sin(latitudeRadians);
+        columns = current;
+    }
+
+    /**
+     * Drop all positions.
+     *
+     * @param capacity the initial capacity of the new columns
+     */
+    void clear(int capacity) {
+        columns = new Columns(capacity);
+    }
+
+    /**
+     * Prepare a radius check around a handle. The returned filter holds a consistent view of the columns and may be
+     * applied to any number of handle arrays.
+     *
+     * @param origin the handle at the center of the radius
+     * @param radius the radius, in the unit of sphereRadius
+     * @param sphereRadius the radius of the sphere
+     * @return the filter
+     */
+    RadiusFilter radiusFilter(int origin, double radius, double sphereRadius) {
+        return new RadiusFilter(columns, origin, radius, sphereRadius);
+    }
+
+    /**
+     * The haversine central angle between two positions.
+     *
+     * @param latitude1 latitude of the first position in degrees
+     * @param longitude1 longitude of the first position in degrees
+     * @param cosLatitude1 cos of the first latitude
+     * @param latitude2 latitude of the second position in degrees
+     * @param longitude2 longitude of the second position in degrees
+     * @param cosLatitude2 cos of the second latitude
+     * @return the angle in radians
+     */
+    public static double centralAngle(double latitude1, double longitude1, double cosLatitude1,
+                                      double latitude2, double longitude2, double cosLatitude2) {
+        double deltaLat = Math.toRadians(latitude2 - latitude1);
+        double deltaLon = Math.toRadians(longitude2 - longitude1);
+        double sinLat = Math.sin(deltaLat / 2);
+        double sinLon = Math.sin(deltaLon / 2);
+        double a = sinLat * sinLat + sinLon * sinLon * cosLatitude1 * cosLatitude2;
+        return 2 * Math.asin(Math.sqrt(a));
+    }
+
+    /**
+     * A radius check around one origin. Not thread safe, use one per query.
+     */
+    static final class RadiusFilter {
+
+        private final Columns columns;
+
+        private final int origin;
+
+        private final double radius;
+
+        private final double sphereRadius;
+
+        /** squared chords below this are certainly in range */
+        private final double inside;
+
+        /** squared chords above this are certainly out of range */
+        private final double outside;
+
+        private int[] matches = new int[16];
+
+        private int count;
+
+        RadiusFilter(Columns columns, int origin, double radius, double sphereRadius) {
+            this.columns = columns;
+            this.origin = origin;
+            this.radius = radius;
+            this.sphereRadius = sphereRadius;
+            double angle = Math.max(0, Math.min(radius / sphereRadius, Math.PI));
+            double halfChord = Math.sin(angle / 2);
+            double threshold = 4 * halfChord * halfChord;
+            this.inside = threshold - BOUNDARY;
+            this.outside = threshold + BOUNDARY;
+        }
+
+        /**
+         * Check a batch of handles and remember the ones in range.
+         *
+         * @param handles candidate handles
+         */
+        void accept(int[] handles) {
+            Columns c = columns;
+            double x0 = c.x[origin];
+            double y0 = c.y[origin];
+            double z0 = c.z[origin];
+            int limit = c.capacity();
+            for (int handle : handles) {
+                if (handle >= limit) {
+                    continue;
+                }
+                double dx = c.x[handle] - x0;
+                double dy = c.y[handle] - y0;
+                double dz = c.z[handle] - z0;
+                double chord = dx * dx + dy * dy + dz * dz;
+                if (chord < inside || (chord <= outside && onBoundaryInRange(handle))) {
+                    add(handle);
+                }
+            }
+        }
+
+        /**
+         * @return the handles in range, sorted
+         */
+        int[] matches() {
+            int[] sorted = Arrays.copyOf(matches, count);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+
+        private boolean onBoundaryInRange(int handle) {
+            Columns c = columns;
+            double angle = centralAngle(c.latitude[origin], c.longitude[origin], c.cosLatitude[origin],
+                    c.latitude[handle], c.longitude[handle], c.cosLatitude[handle]);
+            return sphereRadius * angle <= radius;
+        }
+
+        private void add(int handle) {
+            if (count == matches.length) {
+                matches = Arrays.copyOf(matches, count * 2);
+            }
+            matches[count++] = handle;
+        }
+    }
+
+    /**
+     * One column per attribute, all of the same capacity.
+     */
+    private static final class Columns {
+
+        final double[] latitude;
+
+        final double[] longitude;
+
+        final double[] cosLatitude;
+
+        final double[] x;
+
+        final double[] y;
+
+        final double[] z;
+
+        Columns(int capacity) {
+            this(new double[capacity], new double[capacity], new double[capacity],
+                    new double[capacity], new double[capacity], new double[capacity]);
+        }
+
+        private Columns(double[] latitude, double[] longitude, double[] cosLatitude,
+                        double[] x, double[] y, double[] z) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.cosLatitude = cosLatitude;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+
+        int capacity() {
+            return x.length;
+        }
+
+        Columns grow(int capacity) {
+            return new Columns(Arrays.copyOf(latitude, capacity), Arrays.copyOf(longitude, capacity),
+                    Arrays.copyOf(cosLatitude, capacity), Arrays.copyOf(x, capacity),
+                    Arrays.copyOf(y, capacity), Arrays.copyOf(z, capacity));
+        }
+    }
+}
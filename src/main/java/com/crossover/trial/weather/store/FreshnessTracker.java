@@ -0,0 +1,163 @@
+package com.crossover.trial.weather.store;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Keeps a running count of the airports whose weather was updated within the last day, so that health checks do not
+ * have to scan every airport.
+ *
+ * Airports are filed into a timing wheel of hourly buckets by the hour of their latest update. When the clock moves
+ * past an hour the bucket that falls out of the window is subtracted from the count, so the figure is exact to the
+ * hour: an airport counts as fresh while its last update lies in the current hour or the 23 hours before it.
+ * Update times ahead of the clock are filed at the clock's hour, so that one bad timestamp can not move the wheel
+ * past the real updates.
+ *
+ * @author code test administrator
+ */
+public class FreshnessTracker {
+
+    private static final long HOUR_MILLIS = 3600000L;
+
+    /** hours in the window, one bucket per hour */
+    private static final int WINDOW = 24;
+
+    private static final long NEVER = -1;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** how far an update time may be ahead of the clock before it is pulled back */
+    private static final long CLOCK_SKEW_MILLIS = 60000L;
+
+    /** epoch hour of each airport's latest update by slot handle, checked without locking to skip repeat updates */
+    private volatile AtomicLongArray hourOf = newHours(INITIAL_CAPACITY);
+
+    /** epoch hour held by each bucket of the wheel */
+    private final long[] bucketHour = new long[WINDOW];
+
+    /** airports filed in each bucket of the wheel */
+    private final int[] bucketCount = new int[WINDOW];
+
+    /** airports in the buckets of the current window */
+    private int fresh;
+
+    /** the latest hour the wheel has been advanced to */
+    private long currentHour = NEVER;
+
+    public FreshnessTracker() {
+        Arrays.fill(bucketHour, NEVER);
+    }
+
+    /**
+     * Record an update of an airport's weather.
+     *
+     * @param handle the slot handle
+     * @param time the update time in milliseconds since UTC epoch
+     */
+    public void touch(int handle, long time) {
+        long hour = time / HOUR_MILLIS;
+        AtomicLongArray hours = hourOf;
+        if (handle < hours.length() && hours.get(handle) >= hour) {
+            // the common case, the airport was already filed for this hour
+            return;
+        }
+        move(handle, hour);
+    }
+
+    /**
+     * Stop tracking an airport, called when its slot is released.
+     *
+     * @param handle the slot handle
+     */
+    public synchronized void forget(int handle) {
+        AtomicLongArray hours = hourOf;
+        if (handle < hours.length()) {
+            unfile(hours.get(handle));
+            hours.set(handle, NEVER);
+        }
+    }
+
+    /**
+     * @param now the current time in milliseconds since UTC epoch
+     * @return the number of airports updated within the window
+     */
+    public synchronized int freshCount(long now) {
+        advance(now / HOUR_MILLIS);
+        return fresh;
+    }
+
+    /**
+     * Stop tracking all airports.
+     */
+    public synchronized void clear() {
+        hourOf = newHours(INITIAL_CAPACITY);
+        Arrays.fill(bucketHour, NEVER);
+        Arrays.fill(bucketCount, 0);
+        fresh = 0;
+        currentHour = NEVER;
+    }
+
+    private synchronized void move(int handle, long hour) {
+        hour = Math.min(hour, (System.currentTimeMillis() + CLOCK_SKEW_MILLIS) / HOUR_MILLIS);
+        advance(hour);
+        AtomicLongArray hours = hours(handle);
+        long previous = hours.get(handle);
+        if (previous >= hour || hour <= currentHour - WINDOW) {
+            return;
+        }
+        unfile(previous);
+        int bucket = (int) (hour % WINDOW);
+        if (bucketHour[bucket] != hour) {
+            // expired by advance, or never used
+            bucketHour[bucket] = hour;
+            bucketCount[bucket] = 0;
+        }
+        bucketCount[bucket]++;
+        fresh++;
+        hours.set(handle, hour);
+    }
+
+    private void unfile(long hour) {
+        if (hour != NEVER && hour > currentHour - WINDOW) {
+            int bucket = (int) (hour % WINDOW);
+            bucketCount[bucket]--;
+            fresh--;
+        }
+    }
+
+    /** subtract the buckets that fall out of the window ending at the given hour */
+    private void advance(long hour) {
+        if (hour <= currentHour) {
+            return;
+        }
+        currentHour = hour;
+        for (int i = 0; i < WINDOW; i++) {
+            if (bucketHour[i] != NEVER && bucketHour[i] <= hour - WINDOW) {
+                fresh -= bucketCount[i];
+                bucketCount[i] = 0;
+                bucketHour[i] = NEVER;
+            }
+        }
+    }
+
+    private AtomicLongArray hours(int handle) {
+        AtomicLongArray hours = hourOf;
+        if (handle >= hours.length()) {
+            AtomicLongArray grown = newHours(Math.max(handle + 1, hours.length() * 2));
+            for (int i = 0; i < hours.length(); i++) {
+                grown.set(i, hours.get(i));
+            }
+            hourOf = grown;
+            hours = grown;
+        }
+        return hours;
+    }
+
+    private static AtomicLongArray newHours(int capacity) {
+        AtomicLongArray hours = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            hours.set(i, NEVER);
+        }
+        return hours;
+    }
+}
@@ -0,0 +1,142 @@
+package com.crossover.trial.weather.store;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A fixed latitude/longitude cell grid over the slot handles of the {@link AirportStore}. A radius query visits only
+ * the cells that intersect the spherical cap around the origin, the caller still applies the exact distance check.
+ *
+ * Each cell holds an immutable array of handles that is replaced on change, so queries never lock while additions
+ * and removals are serialized.
+ *
+ * @author code test administrator
+ */
+public class GeoGrid {
+
+    /** cell edge in degrees */
+    private static final double CELL_DEGREES = 1.0;
+
+    private static final int ROWS = (int) (180 / CELL_DEGREES);
+
+    private static final int COLUMNS = (int) (360 / CELL_DEGREES);
+
+    /** widens the pruning bounds so rounding never drops an airport the exact check would accept */
+    private static final double MARGIN_DEGREES = 1e-6;
+
+    private static final int[] EMPTY = new int[0];
+
+    /** handles per cell, row major */
+    private final AtomicReferenceArray<int[]> cells = new AtomicReferenceArray<>(ROWS * COLUMNS);
+
+    /**
+     * Register a handle at a position.
+     *
+     * @param handle the slot handle
+     * @param latitude in degrees
+     * @param longitude in degrees
+     */
+    public synchronized void add(int handle, double latitude, double longitude) {
+        int cell = cellOf(latitude, longitude);
+        int[] handles = handles(cell);
+        int[] grown = Arrays.copyOf(handles, handles.length + 1);
+        grown[handles.length] = handle;
+        cells.set(cell, grown);
+    }
+
+    /**
+     * Unregister a handle previously added at a position.
+     *
+     * @param handle the slot handle
+     * @param latitude in degrees, as given to {@link #add(int, double, double)}
+     * @param longitude in degrees, as given to {@link #add(int, double, double)}
+     */
+    public synchronized void remove(int handle, double latitude, double longitude) {
+        int cell = cellOf(latitude, longitude);
+        int[] handles = handles(cell);
+        for (int i = 0; i < handles.length; i++) {
+            if (handles[i] == handle) {
+                int[] shrunk = new int[handles.length - 1];
+                System.arraycopy(handles, 0, shrunk, 0, i);
+                System.arraycopy(handles, i + 1, shrunk, i, shrunk.length - i);
+                cells.set(cell, shrunk.length == 0 ? null : shrunk);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Forget all handles.
+     */
+    public synchronized void clear() {
+        for (int cell = 0; cell < cells.length(); cell++) {
+            cells.set(cell, null);
+        }
+    }
+
+    /**
+     * Visit the handle arrays of every cell that intersects the spherical cap of the given angular radius around the
+     * origin. The arrays must not be modified.
+     *
+     * @param latitude origin latitude in degrees
+     * @param longitude origin longitude in degrees
+     * @param angularRadius the cap radius in radians, distance divided by the sphere radius
+     * @param consumer receives the handles of one cell at a time
+     */
+    public void cells(double latitude, double longitude, double angularRadius, Consumer<int[]> consumer) {
+        if (angularRadius >= Math.PI) {
+            visit(0, ROWS - 1, 0, COLUMNS - 1, consumer);
+            return;
+        }
+        double reach = Math.toDegrees(angularRadius) + MARGIN_DEGREES;
+        double south = latitude - reach;
+        double north = latitude + reach;
+        int firstRow = row(Math.max(south, -90));
+        int lastRow = row(Math.min(north, 90));
+
+        // a cap that contains a pole covers every longitude, otherwise its longitude extent is bounded
+        double sinReach = Math.sin(angularRadius);
+        double cosLatitude = Math.cos(Math.toRadians(latitude));
+        if (south <= -90 || north >= 90 || sinReach >= cosLatitude) {
+            visit(firstRow, lastRow, 0, COLUMNS - 1, consumer);
+            return;
+        }
+        double halfWidth = Math.toDegrees(Math.asin(sinReach / cosLatitude)) + MARGIN_DEGREES;
+        if (halfWidth >= 180) {
+            visit(firstRow, lastRow, 0, COLUMNS - 1, consumer);
+            return;
+        }
+        int firstColumn = (int) Math.floor((longitude - halfWidth + 180) / CELL_DEGREES);
+        int lastColumn = (int) Math.floor((longitude + halfWidth + 180) / CELL_DEGREES);
+        visit(firstRow, lastRow, firstColumn, lastColumn, consumer);
+    }
+
+    /** columns outside [0, COLUMNS) wrap around the antimeridian */
+    private void visit(int firstRow, int lastRow, int firstColumn, int lastColumn, Consumer<int[]> consumer) {
+        int columnCount = Math.min(lastColumn - firstColumn + 1, COLUMNS);
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int i = 0; i < columnCount; i++) {
+                int[] handles = cells.get(row * COLUMNS + Math.floorMod(firstColumn + i, COLUMNS));
+                if (handles != null) {
+                    consumer.accept(handles);
+                }
+            }
+        }
+    }
+
+    private int[] handles(int cell) {
+        int[] handles = cells.get(cell);
+        return handles == null ? EMPTY : handles;
+    }
+
+    private static int cellOf(double latitude, double longitude) {
+        int column = Math.floorMod((int) Math.floor((longitude + 180) / CELL_DEGREES), COLUMNS);
+        return row(latitude) * COLUMNS + column;
+    }
+
+    private static int row(double latitude) {
+        int row = (int) Math.floor((latitude + 90) / CELL_DEGREES);
+        return Math.max(0, Math.min(ROWS - 1, row));
+    }
+}
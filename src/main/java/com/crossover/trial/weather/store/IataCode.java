@@ -0,0 +1,74 @@
+package com.crossover.trial.weather.store;
+
+/**
+ * Packs three character IATA/FAA codes into a dense integer so they can be used as a perfect hash.
+ *
+ * @author code test administrator
+ */
+public final class IataCode {
+
+    /** number of symbols allowed in each position, 0-9 and A-Z */
+    private static final int RADIX = 36;
+
+    /** length of an IATA/FAA code */
+    private static final int LENGTH = 3;
+
+    /** number of distinct encodable codes */
+    public static final int CODE_SPACE = RADIX * RADIX * RADIX;
+
+    /** marker for codes that can not be encoded */
+    public static final int INVALID = -1;
+
+    private IataCode() {
+
+    }
+
+    /**
+     * Encode an IATA code.
+     *
+     * @param iata a three character code made of upper case letters and digits
+     * @return the code in the range [0, {@link #CODE_SPACE}) or {@link #INVALID}
+     */
+    public static int encode(CharSequence iata) {
+        if (iata == null || iata.length() != LENGTH) {
+            return INVALID;
+        }
+        int code = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            int symbol = symbol(iata.charAt(i));
+            if (symbol < 0) {
+                return INVALID;
+            }
+            code = code * RADIX + symbol;
+        }
+        return code;
+    }
+
+    /**
+     * Decode a value previously produced by {@link #encode(CharSequence)}.
+     *
+     * @param code an encoded IATA code
+     * @return the three character code
+     */
+    public static String decode(int code) {
+        if (code < 0 || code >= CODE_SPACE) {
+            throw new IllegalArgumentException("not an encoded IATA code: " + code);
+        }
+        char[] chars = new char[LENGTH];
+        for (int i = LENGTH - 1; i >= 0; i--) {
+            chars[i] = Character.toUpperCase(Character.forDigit(code % RADIX, RADIX));
+            code /= RADIX;
+        }
+        return new String(chars);
+    }
+
+    private static int symbol(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+}
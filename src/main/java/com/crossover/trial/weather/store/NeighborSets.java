@@ -0,0 +1,173 @@
+package com.crossover.trial.weather.store;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The airports within a few standard radii of every airport, kept as sorted arrays of slot handles so that a query
+ * for one of those radii needs no distance scan. The {@link AirportStore} keeps them up to date as airports come
+ * and go: an added airport finds its neighbors with one scan of the largest radius and is inserted into their
+ * arrays, a removed airport is deleted from the arrays of its neighbors.
+ *
+ * The radii are set with -Dweather.neighbors.radii as a comma separated list in the unit of the sphere radius, km
+ * for the weather queries, by default 50,100,250,500; an empty list turns the neighbor sets off. Memory grows with
+ * the number of airports times their neighbors within the largest radius.
+ *
+ * Arrays are replaced, never modified, so readers need no lock. Writers are serialized by the store.
+ *
+ * @author code test administrator
+ */
+public class NeighborSets {
+
+    /** system property with the radii in km */
+    public static final String RADII_PROPERTY = "weather.neighbors.radii";
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** the radii, ascending */
+    private final double[] radii;
+
+    private final double sphereRadius;
+
+    /** the neighbor handles by radius and handle, null until computed */
+    private volatile AtomicReferenceArray<int[]>[] tiers;
+
+    /**
+     * @param radii the radii to keep neighbors for, in the unit of sphereRadius
+     * @param sphereRadius the radius of the sphere
+     */
+    public NeighborSets(double[] radii, double sphereRadius) {
+        this.radii = radii.clone();
+        Arrays.sort(this.radii);
+        this.sphereRadius = sphereRadius;
+        tiers = newTiers(INITIAL_CAPACITY);
+    }
+
+    /**
+     * @param sphereRadius the radius of the sphere the store is queried with
+     * @return neighbor sets for the radii set by the system properties
+     */
+    public static NeighborSets fromSystemProperties(double sphereRadius) {
+        String property = System.getProperty(RADII_PROPERTY, "50,100,250,500").trim();
+        double[] radii = property.isEmpty() ? new double[0]
+                : Arrays.stream(property.split(",")).mapToDouble(r -> Double.parseDouble(r.trim())).toArray();
+        return new NeighborSets(radii, sphereRadius);
+    }
+
+    /**
+     * @return neighbor sets that keep no radius, every query scans
+     */
+    public static NeighborSets none() {
+        return new NeighborSets(new double[0], 1);
+    }
+
+    /**
+     * @return the number of radii kept
+     */
+    public int size() {
+        return radii.length;
+    }
+
+    /**
+     * @param tier a radius number
+     * @return the radius
+     */
+    public double radius(int tier) {
+        return radii[tier];
+    }
+
+    public double getSphereRadius() {
+        return sphereRadius;
+    }
+
+    /**
+     * @param radius a query radius
+     * @param sphereRadius the sphere radius of the query
+     * @return the number of the radius or -1 if it is not kept
+     */
+    public int tier(double radius, double sphereRadius) {
+        if (sphereRadius != this.sphereRadius) {
+            return -1;
+        }
+        for (int tier = 0; tier < radii.length; tier++) {
+            if (radii[tier] == radius) {
+                return tier;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param tier a radius number
+     * @param handle a slot handle
+     * @return the sorted handles within the radius, including the handle itself, or null if not known; must not
+     *         be modified
+     */
+    public int[] get(int tier, int handle) {
+        AtomicReferenceArray<int[]> neighbors = tiers[tier];
+        return handle < neighbors.length() ? neighbors.get(handle) : null;
+    }
+
+    void set(int tier, int handle, int[] neighbors) {
+        ensureCapacity(handle);
+        tiers[tier].set(handle, neighbors);
+    }
+
+    /** adds a neighbor to the neighbors of a handle */
+    void insert(int tier, int handle, int neighbor) {
+        int[] current = get(tier, handle);
+        if (current == null) {
+            return;
+        }
+        int at = Arrays.binarySearch(current, neighbor);
+        if (at >= 0) {
+            return;
+        }
+        at = -at - 1;
+        int[] next = new int[current.length + 1];
+        System.arraycopy(current, 0, next, 0, at);
+        next[at] = neighbor;
+        System.arraycopy(current, at, next, at + 1, current.length - at);
+        tiers[tier].set(handle, next);
+    }
+
+    /** removes a neighbor from the neighbors of a handle */
+    void delete(int tier, int handle, int neighbor) {
+        int[] current = get(tier, handle);
+        int at = current == null ? -1 : Arrays.binarySearch(current, neighbor);
+        if (at < 0) {
+            return;
+        }
+        int[] next = new int[current.length - 1];
+        System.arraycopy(current, 0, next, 0, at);
+        System.arraycopy(current, at + 1, next, at, next.length - at);
+        tiers[tier].set(handle, next);
+    }
+
+    void clear() {
+        tiers = newTiers(INITIAL_CAPACITY);
+    }
+
+    private void ensureCapacity(int handle) {
+        AtomicReferenceArray<int[]>[] current = tiers;
+        if (current.length == 0 || handle < current[0].length()) {
+            return;
+        }
+        AtomicReferenceArray<int[]>[] grown = newTiers(Math.max(handle + 1, current[0].length() * 2));
+        for (int tier = 0; tier < current.length; tier++) {
+            for (int i = 0; i < current[tier].length(); i++) {
+                grown[tier].set(i, current[tier].get(i));
+            }
+        }
+        tiers = grown;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private AtomicReferenceArray<int[]>[] newTiers(int capacity) {
+        AtomicReferenceArray<int[]>[] fresh = new AtomicReferenceArray[radii.length];
+        for (int tier = 0; tier < fresh.length; tier++) {
+            fresh[tier] = new AtomicReferenceArray<>(capacity);
+        }
+        return fresh;
+    }
+}
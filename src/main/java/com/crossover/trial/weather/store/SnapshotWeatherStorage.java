@@ -0,0 +1,115 @@
+package com.crossover.trial.weather.store;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.crossover.trial.weather.entity.AtmosphericInformation;
+import com.crossover.trial.weather.entity.DataPoint;
+import com.crossover.trial.weather.entity.DataPointType;
+
+/**
+ * Keeps an immutable {@link AtmosphericInformation} snapshot per airport. Updates build a new snapshot and swap it
+ * in with a compare and set, so readers never lock and concurrent collectors never lose each other's readings.
+ *
+ * Snapshots live in fixed size chunks that never move, growing the storage only extends the chunk directory.
+ *
+ * @author code test administrator
+ */
+public class SnapshotWeatherStorage implements WeatherStorage {
+
+    private static final int CHUNK_BITS = 10;
+
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    private static final AtmosphericInformation EMPTY = new AtmosphericInformation();
+
+    private volatile AtomicReferenceArray<AtmosphericInformation>[] chunks = newDirectory(0);
+
+    @Override
+    public AtmosphericInformation read(int handle) {
+        AtomicReferenceArray<AtmosphericInformation> chunk = chunkOrNull(handle);
+        AtmosphericInformation ai = chunk == null ? null : chunk.get(handle & (CHUNK_SIZE - 1));
+        return ai == null ? EMPTY : ai;
+    }
+
+    @Override
+    public boolean hasInformation(int handle) {
+        return read(handle).hasInformation();
+    }
+
+    @Override
+    public void write(int handle, DataPointType type, DataPoint dp, long time) {
+        AtomicReferenceArray<AtmosphericInformation> chunk = chunk(handle);
+        int i = handle & (CHUNK_SIZE - 1);
+        AtmosphericInformation current;
+        do {
+            current = chunk.get(i);
+        } while (!chunk.compareAndSet(i, current, (current == null ? EMPTY : current).with(type, dp, time)));
+    }
+
+    @Override
+    public void write(int handle, DataPointType type, double mean, int first, int second, int third, int count,
+                      long time) {
+        // snapshots hold data points, so this is where the object gets made
+        DataPoint dp = new DataPoint(first, second, 0, third, count);
+        dp.setMean(mean);
+        write(handle, type, dp, time);
+    }
+
+    @Override
+    public void writeAll(int handle, Map<DataPointType, DataPoint> points, long time) {
+        AtomicReferenceArray<AtmosphericInformation> chunk = chunk(handle);
+        int i = handle & (CHUNK_SIZE - 1);
+        AtmosphericInformation current;
+        AtmosphericInformation next;
+        do {
+            current = chunk.get(i);
+            next = current == null ? EMPTY : current;
+            for (Map.Entry<DataPointType, DataPoint> point : points.entrySet()) {
+                next = next.with(point.getKey(), point.getValue(), time);
+            }
+        } while (!chunk.compareAndSet(i, current, next));
+    }
+
+    @Override
+    public void release(int handle) {
+        AtomicReferenceArray<AtmosphericInformation> chunk = chunkOrNull(handle);
+        if (chunk != null) {
+            chunk.set(handle & (CHUNK_SIZE - 1), null);
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        chunks = newDirectory(0);
+    }
+
+    private AtomicReferenceArray<AtmosphericInformation> chunkOrNull(int handle) {
+        AtomicReferenceArray<AtmosphericInformation>[] directory = chunks;
+        int index = handle >>> CHUNK_BITS;
+        return index < directory.length ? directory[index] : null;
+    }
+
+    private AtomicReferenceArray<AtmosphericInformation> chunk(int handle) {
+        AtomicReferenceArray<AtmosphericInformation> chunk = chunkOrNull(handle);
+        return chunk != null ? chunk : addChunk(handle >>> CHUNK_BITS);
+    }
+
+    private synchronized AtomicReferenceArray<AtmosphericInformation> addChunk(int index) {
+        AtomicReferenceArray<AtmosphericInformation>[] directory = chunks;
+        if (index >= directory.length) {
+            directory = Arrays.copyOf(directory, index + 1);
+        }
+        if (directory[index] == null) {
+            directory[index] = new AtomicReferenceArray<>(CHUNK_SIZE);
+        }
+        chunks = directory;
+        return directory[index];
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static AtomicReferenceArray<AtmosphericInformation>[] newDirectory(int size) {
+        return new AtomicReferenceArray[size];
+    }
+}
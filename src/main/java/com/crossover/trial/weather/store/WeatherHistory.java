@@ -0,0 +1,222 @@
+package com.crossover.trial.weather.store;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.crossover.trial.weather.entity.DataPoint;
+import com.crossover.trial.weather.entity.DataPointType;
+import com.crossover.trial.weather.entity.Reading;
+
+/**
+ * Keeps the most recent readings of every airport and data point type in fixed capacity ring buffers of primitive
+ * columns. A ring is allocated on the first reading of its airport and type; after that appending overwrites the
+ * oldest entry and allocates nothing, so memory stays at capacity times 32 bytes per airport and type in use.
+ *
+ * Rings live in fixed size chunks by slot handle, like {@link SnapshotWeatherStorage}. Each ring is guarded by its
+ * own monitor, appends to different airports or types never contend.
+ *
+ * The capacity is set with -Dweather.history.capacity (default 256), 0 turns the history off.
+ *
+ * @author code test administrator
+ */
+public class WeatherHistory {
+
+    /** system property with the number of readings kept per airport and type */
+    public static final String CAPACITY_PROPERTY = "weather.history.capacity";
+
+    private static final int DEFAULT_CAPACITY = 256;
+
+    private static final int CHUNK_BITS = 10;
+
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    private static final int TYPES = DataPointType.values().length;
+
+    private final int capacity;
+
+    /** rings by handle and type ordinal, null until the first reading */
+    private volatile AtomicReferenceArray<Ring>[] chunks = newDirectory(0);
+
+    public WeatherHistory(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("negative history capacity: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return a history with the capacity set by the system properties
+     */
+    public static WeatherHistory fromSystemProperties() {
+        return new WeatherHistory(Integer.getInteger(CAPACITY_PROPERTY, DEFAULT_CAPACITY));
+    }
+
+    /**
+     * @return the number of readings kept per airport and type
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Record a reading, dropping the oldest reading of the airport and type if the ring is full.
+     *
+     * @param handle the slot handle
+     * @param type the data point type
+     * @param mean the mean of the observations
+     * @param first the 1st quartile
+     * @param second the 2nd quartile
+     * @param third the 3rd quartile
+     * @param count the number of observations
+     * @param time the update time in milliseconds since UTC epoch
+     */
+    public void append(int handle, DataPointType type, double mean, int first, int second, int third, int count,
+                       long time) {
+        if (capacity == 0) {
+            return;
+        }
+        ring(handle, type).append(mean, first, second, third, count, time);
+    }
+
+    /**
+     * @param handle the slot handle
+     * @param type the data point type
+     * @param from the start of the window in milliseconds since UTC epoch, inclusive
+     * @param to the end of the window in milliseconds since UTC epoch, inclusive
+     * @return the kept readings within the window, oldest first
+     */
+    public List<Reading> read(int handle, DataPointType type, long from, long to) {
+        AtomicReferenceArray<Ring> chunk = chunkOrNull(handle);
+        Ring ring = chunk == null ? null : chunk.get(index(handle, type));
+        return ring == null ? new ArrayList<>() : ring.read(from, to);
+    }
+
+    /**
+     * Forget the readings of a handle, called when its slot is released.
+     *
+     * @param handle the slot handle
+     */
+    public void release(int handle) {
+        AtomicReferenceArray<Ring> chunk = chunkOrNull(handle);
+        if (chunk != null) {
+            int base = (handle & (CHUNK_SIZE - 1)) * TYPES;
+            for (int type = 0; type < TYPES; type++) {
+                chunk.set(base + type, null);
+            }
+        }
+    }
+
+    /**
+     * Forget all readings.
+     */
+    public synchronized void clear() {
+        chunks = newDirectory(0);
+    }
+
+    private Ring ring(int handle, DataPointType type) {
+        AtomicReferenceArray<Ring> chunk = chunk(handle);
+        int i = index(handle, type);
+        Ring ring = chunk.get(i);
+        if (ring == null) {
+            ring = new Ring(capacity);
+            if (!chunk.compareAndSet(i, null, ring)) {
+                ring = chunk.get(i);
+            }
+        }
+        return ring;
+    }
+
+    private static int index(int handle, DataPointType type) {
+        return (handle & (CHUNK_SIZE - 1)) * TYPES + type.ordinal();
+    }
+
+    private AtomicReferenceArray<Ring> chunkOrNull(int handle) {
+        AtomicReferenceArray<Ring>[] directory = chunks;
+        int index = handle >>> CHUNK_BITS;
+        return index < directory.length ? directory[index] : null;
+    }
+
+    private AtomicReferenceArray<Ring> chunk(int handle) {
+        AtomicReferenceArray<Ring> chunk = chunkOrNull(handle);
+        return chunk != null ? chunk : addChunk(handle >>> CHUNK_BITS);
+    }
+
+    private synchronized AtomicReferenceArray<Ring> addChunk(int index) {
+        AtomicReferenceArray<Ring>[] directory = chunks;
+        if (index >= directory.length) {
+            directory = Arrays.copyOf(directory, index + 1);
+        }
+        if (directory[index] == null) {
+            directory[index] = new AtomicReferenceArray<>(CHUNK_SIZE * TYPES);
+        }
+        chunks = directory;
+        return directory[index];
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static AtomicReferenceArray<Ring>[] newDirectory(int size) {
+        return new AtomicReferenceArray[size];
+    }
+
+    /**
+     * The readings of one airport and type, in columns indexed by ring position.
+     */
+    private static final class Ring {
+
+        final long[] time;
+
+        final double[] mean;
+
+        final int[] first;
+
+        final int[] second;
+
+        final int[] third;
+
+        final int[] count;
+
+        /** position of the next append */
+        int next;
+
+        /** number of positions in use */
+        int size;
+
+        Ring(int capacity) {
+            time = new long[capacity];
+            mean = new double[capacity];
+            first = new int[capacity];
+            second = new int[capacity];
+            third = new int[capacity];
+            count = new int[capacity];
+        }
+
+        synchronized void append(double mean, int first, int second, int third, int count, long time) {
+            this.time[next] = time;
+            this.mean[next] = mean;
+            this.first[next] = first;
+            this.second[next] = second;
+            this.third[next] = third;
+            this.count[next] = count;
+            next = next + 1 == this.time.length ? 0 : next + 1;
+            if (size < this.time.length) {
+                size++;
+            }
+        }
+
+        synchronized List<Reading> read(long from, long to) {
+            List<Reading> readings = new ArrayList<>();
+            int oldest = size < time.length ? 0 : next;
+            for (int n = 0; n < size; n++) {
+                int i = (oldest + n) % time.length;
+                if (time[i] >= from && time[i] <= to) {
+                    DataPoint dp = new DataPoint(first[i], second[i], 0, third[i], count[i]);
+                    dp.setMean(mean[i]);
+                    readings.add(new Reading(time[i], dp));
+                }
+            }
+            return readings;
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.crossover.trial.weather.store;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.crossover.trial.weather.entity.Aggregate;
+import com.crossover.trial.weather.entity.DataPointType;
+
+/**
+ * Aggregates the mean of every reading into minute, hour and day buckets per airport and data point type as it is
+ * collected, so that trends over days read a few hundred buckets instead of every reading. A bucket holds the
+ * minimum, maximum, sum and count of the means and the latest mean.
+ *
+ * Each resolution keeps a fixed ring of buckets, by default the last 60 minutes, 168 hours and 31 days; the counts
+ * are set with -Dweather.rollup.minutes, -Dweather.rollup.hours and -Dweather.rollup.days. A reading older than the
+ * ring of a resolution is left out of that resolution. Reading times are taken as given, the collectors date REST
+ * updates by the server clock and reject binary records dated ahead of it. The buckets of an airport and type are
+ * allocated on its first reading, after that updates allocate nothing.
+ *
+ * @author code test administrator
+ */
+public class WeatherRollups {
+
+    /** system property with the number of minute buckets kept per airport and type */
+    public static final String MINUTES_PROPERTY = "weather.rollup.minutes";
+
+    /** system property with the number of hour buckets kept per airport and type */
+    public static final String HOURS_PROPERTY = "weather.rollup.hours";
+
+    /** system property with the number of day buckets kept per airport and type */
+    public static final String DAYS_PROPERTY = "weather.rollup.days";
+
+    private static final int CHUNK_BITS = 10;
+
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    private static final int TYPES = DataPointType.values().length;
+
+    /**
+     * The bucket sizes.
+     */
+    public enum Resolution {
+        MINUTE(60000L),
+        HOUR(3600000L),
+        DAY(86400000L);
+
+        private static final Map<String, Resolution> BY_NAME = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+        static {
+            for (Resolution resolution : values()) {
+                BY_NAME.put(resolution.name(), resolution);
+            }
+        }
+
+        private final long millis;
+
+        Resolution(long millis) {
+            this.millis = millis;
+        }
+
+        /**
+         * @return the length of a bucket in milliseconds
+         */
+        public long millis() {
+            return millis;
+        }
+
+        /**
+         * @param name a resolution name in any case
+         * @return the resolution or null if there is no resolution with that name
+         */
+        public static Resolution fromName(String name) {
+            return name == null ? null : BY_NAME.get(name);
+        }
+    }
+
+    /** buckets kept by resolution ordinal */
+    private final int[] buckets;
+
+    /** series by handle and type ordinal, null until the first reading */
+    private volatile AtomicReferenceArray<Series>[] chunks = newDirectory(0);
+
+    public WeatherRollups(int minutes, int hours, int days) {
+        if (minutes < 1 || hours < 1 || days < 1) {
+            throw new IllegalArgumentException("every resolution needs a bucket");
+        }
+        buckets = new int[] {minutes, hours, days};
+    }
+
+    /**
+     * @return rollups with the bucket counts set by the system properties
+     */
+    public static WeatherRollups fromSystemProperties() {
+        return new WeatherRollups(Integer.getInteger(MINUTES_PROPERTY, 60), Integer.getInteger(HOURS_PROPERTY, 168),
+                Integer.getInteger(DAYS_PROPERTY, 31));
+    }
+
+    /**
+     * Add the mean of a reading to the buckets covering its time.
+     *
+     * @param handle the slot handle
+     * @param type the data point type
+     * @param mean the mean of the reading
+     * @param time the update time in milliseconds since UTC epoch
+     */
+    public void add(int handle, DataPointType type, double mean, long time) {
+        series(handle, type).add(mean, time);
+    }
+
+    /**
+     * @param handle the slot handle
+     * @param type the data point type
+     * @param resolution the bucket size
+     * @param from the start of the window in milliseconds since UTC epoch
+     * @param to the end of the window in milliseconds since UTC epoch
+     * @return the kept buckets that overlap the window, oldest first
+     */
+    public List<Aggregate> read(int handle, DataPointType type, Resolution resolution, long from, long to) {
+        AtomicReferenceArray<Series> chunk = chunkOrNull(handle);
+        Series series = chunk == null ? null : chunk.get(index(handle, type.ordinal()));
+        return series == null ? new ArrayList<>() : series.read(resolution, from, to);
+    }
+
+    /**
+     * Forget the buckets of a handle, called when its slot is released.
+     *
+     * @param handle the slot handle
+     */
+    public void release(int handle) {
+        AtomicReferenceArray<Series> chunk = chunkOrNull(handle);
+        if (chunk != null) {
+            for (int type = 0; type < TYPES; type++) {
+                chunk.set(index(handle, type), null);
+            }
+        }
+    }
+
+    /**
+     * Forget all buckets.
+     */
+    public synchronized void clear() {
+        chunks = newDirectory(0);
+    }
+
+    private Series series(int handle, DataPointType type) {
+        AtomicReferenceArray<Series> chunk = chunk(handle);
+        int i = index(handle, type.ordinal());
+        Series series = chunk.get(i);
+        if (series == null) {
+            series = new Series(buckets);
+            if (!chunk.compareAndSet(i, null, series)) {
+                series = chunk.get(i);
+            }
+        }
+        return series;
+    }
+
+    private static int index(int handle, int type) {
+        return (handle & (CHUNK_SIZE - 1)) * TYPES + type;
+    }
+
+    private AtomicReferenceArray<Series> chunkOrNull(int handle) {
+        AtomicReferenceArray<Series>[] directory = chunks;
+        int index = handle >>> CHUNK_BITS;
+        return index < directory.length ? directory[index] : null;
+    }
+
+    private AtomicReferenceArray<Series> chunk(int handle) {
+        AtomicReferenceArray<Series> chunk = chunkOrNull(handle);
+        return chunk != null ? chunk : addChunk(handle >>> CHUNK_BITS);
+    }
+
+    private synchronized AtomicReferenceArray<Series> addChunk(int index) {
+        AtomicReferenceArray<Series>[] directory = chunks;
+        if (index >= directory.length) {
+            directory = Arrays.copyOf(directory, index + 1);
+        }
+        if (directory[index] == null) {
+            directory[index] = new AtomicReferenceArray<>(CHUNK_SIZE * TYPES);
+        }
+        chunks = directory;
+        return directory[index];
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static AtomicReferenceArray<Series>[] newDirectory(int size) {
+        return new AtomicReferenceArray[size];
+    }
+
+    /**
+     * The buckets of one airport and type at every resolution.
+     */
+    private static final class Series {
+
+        private final Buckets[] levels = new Buckets[Resolution.values().length];
+
+        Series(int[] buckets) {
+            for (Resolution resolution : Resolution.values()) {
+                levels[resolution.ordinal()] = new Buckets(resolution.millis(), buckets[resolution.ordinal()]);
+            }
+        }
+
+        synchronized void add(double mean, long time) {
+            for (Buckets level : levels) {
+                level.add(mean, time);
+            }
+        }
+
+        synchronized List<Aggregate> read(Resolution resolution, long from, long to) {
+            return levels[resolution.ordinal()].read(from, to);
+        }
+    }
+
+    /**
+     * A ring of buckets of one size, bucket n of the epoch lives at position n modulo the ring size.
+     */
+    private static final class Buckets {
+
+        private static final long UNUSED = Long.MIN_VALUE;
+
+        final long millis;
+
+        /** epoch bucket number held by each position */
+        final long[] bucket;
+
+        final double[] min;
+
+        final double[] max;
+
+        final double[] sum;
+
+        final long[] count;
+
+        final double[] last;
+
+        /** time of the reading in last */
+        final long[] lastTime;
+
+        /** the newest bucket number seen */
+        long newest = UNUSED;
+
+        Buckets(long millis, int size) {
+            this.millis = millis;
+            bucket = new long[size];
+            min = new double[size];
+            max = new double[size];
+            sum = new double[size];
+            count = new long[size];
+            last = new double[size];
+            lastTime = new long[size];
+            Arrays.fill(bucket, UNUSED);
+        }
+
+        void add(double mean, long time) {
+            long n = Math.floorDiv(time, millis);
+            if (newest != UNUSED && n <= newest - bucket.length) {
+                // older than the ring
+                return;
+            }
+            newest = newest == UNUSED ? n : Math.max(newest, n);
+            int i = (int) Math.floorMod(n, (long) bucket.length);
+            if (bucket[i] != n) {
+                bucket[i] = n;
+                min[i] = mean;
+                max[i] = mean;
+                sum[i] = 0;
+                count[i] = 0;
+                lastTime[i] = Long.MIN_VALUE;
+            }
+            min[i] = Math.min(min[i], mean);
+            max[i] = Math.max(max[i], mean);
+            sum[i] += mean;
+            count[i]++;
+            if (time >= lastTime[i]) {
+                last[i] = mean;
+                lastTime[i] = time;
+            }
+        }
+
+        List<Aggregate> read(long from, long to) {
+            List<Aggregate> aggregates = new ArrayList<>();
+            if (newest == UNUSED) {
+                return aggregates;
+            }
+            for (long n = newest - bucket.length + 1; n <= newest; n++) {
+                int i = (int) Math.floorMod(n, (long) bucket.length);
+                long start = n * millis;
+                if (bucket[i] == n && start + millis > from && start <= to) {
+                    aggregates.add(new Aggregate(start, millis, min[i], max[i], sum[i], count[i], last[i]));
+                }
+            }
+            return aggregates;
+        }
+    }
+}
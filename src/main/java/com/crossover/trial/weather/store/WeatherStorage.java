@@ -0,0 +1,87 @@
+package com.crossover.trial.weather.store;
+
+import java.util.Map;
+
+import com.crossover.trial.weather.entity.AtmosphericInformation;
+import com.crossover.trial.weather.entity.DataPoint;
+import com.crossover.trial.weather.entity.DataPointType;
+
+/**
+ * Holds the current atmospheric information of every airport, keyed by slot handle. Readers never block and always
+ * see a consistent state of an airport, even while collectors update it.
+ *
+ * @author code test administrator
+ */
+public interface WeatherStorage {
+
+    /** system property selecting the storage, snapshot (default) or columnar */
+    String STORAGE_PROPERTY = "weather.storage";
+
+    /**
+     * @param handle the slot handle
+     * @return a consistent view of the airport's atmospheric information
+     */
+    AtmosphericInformation read(int handle);
+
+    /**
+     * @param handle the slot handle
+     * @return true if at least one data point has been stored for the airport
+     */
+    boolean hasInformation(int handle);
+
+    /**
+     * Store a data point, replacing the previous data point of the same type.
+     *
+     * @param handle the slot handle
+     * @param type the data point type
+     * @param dp the data point
+     * @param time the update time in milliseconds since UTC epoch
+     */
+    void write(int handle, DataPointType type, DataPoint dp, long time);
+
+    /**
+     * Store a data point given by its fields, so that decoded input does not have to become a {@link DataPoint}
+     * first.
+     *
+     * @param handle the slot handle
+     * @param type the data point type
+     * @param mean the mean of the observations
+     * @param first the 1st quartile
+     * @param second the 2nd quartile
+     * @param third the 3rd quartile
+     * @param count the number of observations
+     * @param time the update time in milliseconds since UTC epoch
+     */
+    void write(int handle, DataPointType type, double mean, int first, int second, int third, int count, long time);
+
+    /**
+     * Store several data points of one airport as a single update, readers see either none or all of them.
+     *
+     * @param handle the slot handle
+     * @param points the data points by type
+     * @param time the update time in milliseconds since UTC epoch
+     */
+    void writeAll(int handle, Map<DataPointType, DataPoint> points, long time);
+
+    /**
+     * Forget the data of a handle, called when its slot is released.
+     *
+     * @param handle the slot handle
+     */
+    void release(int handle);
+
+    /**
+     * Forget all data.
+     */
+    void clear();
+
+    /**
+     * @return the storage selected by the {@link #STORAGE_PROPERTY} system property
+     */
+    static WeatherStorage fromSystemProperties() {
+        if ("columnar".equalsIgnoreCase(System.getProperty(STORAGE_PROPERTY))) {
+            return new ColumnarWeatherStorage();
+        }
+        return new SnapshotWeatherStorage();
+    }
+}
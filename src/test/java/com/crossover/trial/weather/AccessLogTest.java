@@ -0,0 +1,93 @@
+package com.crossover.trial.weather;
+
+import com.crossover.trial.weather.server.AccessLog;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AccessLogTest {
+
+    private Logger _logger = Logger.getAnonymousLogger();
+
+    private List<String> _lines = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        _logger.setUseParentHandlers(false);
+        _logger.addHandler(new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                _lines.add(record.getLevel() + " " + record.getMessage());
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+    }
+
+    @Test
+    public void testEntriesAreLoggedInOrder() throws Exception {
+        AccessLog log = new AccessLog(_logger, Level.INFO, 1, 16);
+        for (int i = 0; i < 10; i++) {
+            log.record("GET", "/query/ping/" + i);
+        }
+        log.close();
+        assertEquals(10, _lines.size());
+        assertEquals("INFO GET /query/ping/0", _lines.get(0));
+        assertEquals("INFO GET /query/ping/9", _lines.get(9));
+    }
+
+    @Test
+    public void testConcurrentRecordsAreLoggedOrDropped() throws Exception {
+        AccessLog log = new AccessLog(_logger, Level.INFO, 1, 64);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    log.record("POST", "/collect/weather");
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        log.close();
+        assertEquals(20000, _lines.size() + log.getDropped());
+    }
+
+    @Test
+    public void testLevelAndSampling() throws Exception {
+        _logger.setLevel(Level.INFO);
+        AccessLog log = new AccessLog(_logger, Level.FINE, 1, 16);
+        log.record("GET", "/query/ping");
+        log.setLevel(Level.WARNING);
+        log.record("GET", "/query/ping");
+        log.setLevel(Level.OFF);
+        log.record("GET", "/query/ping");
+
+        log.setLevel(Level.INFO);
+        log.setSampleRate(1000000);
+        for (int i = 0; i < 10; i++) {
+            log.record("GET", "/query/weather");
+        }
+        log.close();
+        assertEquals("WARNING GET /query/ping", _lines.get(0));
+        assertTrue(_lines.size() <= 2);
+    }
+}
@@ -0,0 +1,69 @@
+package com.crossover.trial.weather;
+
+import com.crossover.trial.weather.entity.AirportData;
+import com.crossover.trial.weather.persistence.AirportCatalog;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class AirportCatalogTest {
+
+    @Test
+    public void testParseQuotedFields() throws Exception {
+        String dat = "1,\"General Edward Lawrence Logan Intl\",\"Boston\",\"United States\",\"BOS\",\"KBOS\","
+                + "42.364347,-71.005181,19,-5,\"A\"\r\n"
+                + "2,\"Say \"\"Hi\"\", Newark\",\"Newark\",\"United States\",\"EWR\",\"KEWR\",40.6925,-74.168667\n"
+                + "3,\"No Code\",\"Nowhere\",\"Nowhere\",\\N,\"XXXX\",1,2,0,0,\"U\"\n"
+                + "4,\"Bad\",\"Place\",\"Nowhere\",\"BAD\",\"XXXX\",north,2\n"
+                + "\n"
+                + "5,City,London,United Kingdom,LCY,EGLC,51.505278,0.055278,19,0,E";
+        List<AirportData> airports = AirportCatalog.parse(ByteBuffer.wrap(dat.getBytes(StandardCharsets.UTF_8)), 4);
+        assertEquals(3, airports.size());
+        assertEquals("BOS", airports.get(0).getIata());
+        assertEquals(-71.005181, airports.get(0).getLongitude(), 0);
+        assertEquals("EWR", airports.get(1).getIata());
+        assertEquals(40.6925, airports.get(1).getLatitude(), 0);
+        assertEquals("LCY", airports.get(2).getIata());
+        assertEquals(0.055278, airports.get(2).getLongitude(), 0);
+    }
+
+    @Test
+    public void testParallelRangesKeepFileOrder() throws Exception {
+        StringBuilder dat = new StringBuilder();
+        for (int i = 0; i < 26 * 26 * 26; i++) {
+            String iata = "" + (char) ('A' + i / 676) + (char) ('A' + i / 26 % 26) + (char) ('A' + i % 26);
+            dat.append(i).append(",\"Airport, ").append(i).append("\",\"City\",\"Country\",\"").append(iata)
+                    .append("\",\"ICAO\",").append(i % 90).append(".5,").append(i % 180).append(".25,0,0,\"U\"\n");
+        }
+        List<AirportData> airports = AirportCatalog.parse(
+                ByteBuffer.wrap(dat.toString().getBytes(StandardCharsets.UTF_8)), 8);
+        assertEquals(26 * 26 * 26, airports.size());
+        for (int i = 0; i < airports.size(); i++) {
+            assertEquals(i % 90 + 0.5, airports.get(i).getLatitude(), 0);
+        }
+        assertEquals("ZZZ", airports.get(airports.size() - 1).getIata());
+    }
+
+    @Test
+    public void testReadFile() throws Exception {
+        List<AirportData> airports = AirportCatalog.read(
+                Paths.get(AirportCatalogTest.class.getResource("/airports.dat").toURI()));
+        assertEquals(10, airports.size());
+        assertEquals("BOS", airports.get(0).getIata());
+    }
+
+    @Test
+    public void testFormatReadsBack() throws Exception {
+        String line = AirportCatalog.format(new AirportData("JFK", 40.639751, -73.778925));
+        List<AirportData> airports = AirportCatalog.parse(ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8)), 1);
+        assertEquals(1, airports.size());
+        assertEquals("JFK", airports.get(0).getIata());
+        assertEquals(-73.778925, airports.get(0).getLongitude(), 0);
+    }
+}
@@ -0,0 +1,211 @@
+package com.crossover.trial.weather;
+
+import com.crossover.trial.weather.entity.Aggregate;
+import com.crossover.trial.weather.entity.AirportData;
+import com.crossover.trial.weather.entity.AtmosphericInformation;
+import com.crossover.trial.weather.entity.DataPoint;
+import com.crossover.trial.weather.entity.DataPointType;
+import com.crossover.trial.weather.entity.Reading;
+import com.crossover.trial.weather.store.AirportIndex;
+import com.crossover.trial.weather.store.AirportSlot;
+import com.crossover.trial.weather.store.AirportStore;
+import com.crossover.trial.weather.store.ColumnarWeatherStorage;
+import com.crossover.trial.weather.store.IataCode;
+import com.crossover.trial.weather.store.SnapshotWeatherStorage;
+import com.crossover.trial.weather.store.WeatherHistory;
+import com.crossover.trial.weather.store.WeatherRollups;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class AirportStoreTest {
+
+    private AirportStore _store;
+
+    @Before
+    public void setUp() throws Exception {
+        _store = new AirportStore();
+        _store.add(new AirportData("BOS", 42.364347, -71.005181));
+        _store.add(new AirportData("EWR", 40.6925, -74.168667));
+        _store.add(new AirportData("JFK", 40.639751, -73.778925));
+    }
+
+    @Test
+    public void testFind() throws Exception {
+        assertEquals("EWR", _store.slot("EWR").getAirport().getIata());
+        assertEquals(2, _store.handleOf("JFK"));
+        assertNull(_store.slot("LHR"));
+        assertNull(_store.slot("bos"));
+        assertNull(_store.slot((String) null));
+    }
+
+    @Test
+    public void testRemoveKeepsHandlesStable() throws Exception {
+        assertEquals("EWR", _store.remove("EWR").getAirport().getIata());
+        assertNull(_store.remove("EWR"));
+        assertEquals(2, _store.size());
+        assertEquals(AirportIndex.NOT_FOUND, _store.handleOf("EWR"));
+        assertEquals(2, _store.handleOf("JFK"));
+        assertEquals(2, _store.slots().size());
+    }
+
+    @Test
+    public void testFreeHandlesAreReused() throws Exception {
+        _store.remove("EWR");
+        AirportSlot slot = _store.add(new AirportData("LGA", 40.777245, -73.872608));
+        assertEquals(1, slot.getHandle());
+        assertEquals(3, _store.limit());
+        assertSame(slot, _store.slot(1));
+    }
+
+    @Test
+    public void testLateUpdateOfRemovedAirportIsRejected() throws Exception {
+        AirportSlot removed = _store.slot("EWR");
+        _store.remove("EWR");
+        DataPoint dp = new DataPoint(1, 1, 0, 1, 1);
+        assertFalse(removed.update(DataPointType.WIND, dp, 1000L));
+        assertFalse(_store.touch(removed, 1000L));
+        assertEquals(0, _store.freshCount(1000L));
+
+        AirportSlot reused = _store.add(new AirportData("LGA", 40.777245, -73.872608));
+        assertEquals(removed.getHandle(), reused.getHandle());
+        assertFalse(reused.hasInformation());
+        assertTrue(reused.history(DataPointType.WIND, 0, Long.MAX_VALUE).isEmpty());
+        assertTrue(reused.update(DataPointType.WIND, dp, 1000L));
+        assertTrue(_store.touch(reused, 1000L));
+        assertEquals(1, _store.freshCount(1000L));
+    }
+
+    @Test
+    public void testAddReplacesExistingCode() throws Exception {
+        AirportSlot before = _store.slot("BOS");
+        AirportSlot after = _store.add(new AirportData("BOS", 1, 2));
+        assertEquals(0, after.getHandle());
+        assertEquals(3, _store.size());
+        assertEquals(1, _store.slot("BOS").getAirport().getLatitude(), 0);
+        assertSame(before.getAtmosphericInformation(), after.getAtmosphericInformation());
+    }
+
+    @Test
+    public void testConcurrentUpdatesAreNotLost() throws Exception {
+        checkConcurrentUpdates(new AirportStore(new SnapshotWeatherStorage()));
+        checkConcurrentUpdates(new AirportStore(new ColumnarWeatherStorage()));
+    }
+
+    @Test
+    public void testColumnarStorageRoundTrip() throws Exception {
+        AirportStore store = new AirportStore(new ColumnarWeatherStorage());
+        AirportSlot slot = store.add(new AirportData("BOS", 42.364347, -71.005181));
+        assertFalse(slot.hasInformation());
+
+        DataPoint dp = new DataPoint.Builder().withCount(10).withFirst(10).withMedian(20).withLast(30).withMean(22).build();
+        dp.setMean(21.5);
+        slot.update(DataPointType.PRESSURE, dp, 1234);
+        AtmosphericInformation ai = slot.getAtmosphericInformation();
+        assertEquals(dp, ai.getPressure());
+        assertNull(ai.getWind());
+        assertEquals(1234, ai.getLastUpdateTime());
+
+        store.remove("BOS");
+        slot = store.add(new AirportData("BOS", 42.364347, -71.005181));
+        assertFalse(slot.hasInformation());
+    }
+
+    private void checkConcurrentUpdates(AirportStore store) throws Exception {
+        AirportSlot slot = store.add(new AirportData("BOS", 42.364347, -71.005181));
+        DataPoint dp = new DataPoint.Builder().withCount(10).withFirst(10).withMedian(20).withLast(30).withMean(22).build();
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        for (int i = 1; i <= 1000; i++) {
+            long time = i;
+            pool.execute(() -> slot.update(DataPointType.WIND, dp, time));
+            pool.execute(() -> slot.update(DataPointType.HUMIDTY, dp, time));
+        }
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.SECONDS);
+
+        AtmosphericInformation ai = slot.getAtmosphericInformation();
+        assertEquals(dp, ai.getWind());
+        assertEquals(dp, ai.getHumidity());
+        assertNull(ai.getPressure());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddRejectsInvalidCode() throws Exception {
+        _store.add(new AirportData("KJFK", 40.639751, -73.778925));
+    }
+
+    @Test
+    public void testIataCodeRoundTrip() throws Exception {
+        assertEquals("JFK", IataCode.decode(IataCode.encode("JFK")));
+        assertEquals("1G4", IataCode.decode(IataCode.encode("1G4")));
+        assertEquals(IataCode.INVALID, IataCode.encode("KJFK"));
+    }
+
+    @Test
+    public void testHistoryKeepsLatestReadings() throws Exception {
+        AirportStore store = new AirportStore(new SnapshotWeatherStorage(), new WeatherHistory(4));
+        AirportSlot slot = store.add(new AirportData("BOS", 42.364347, -71.005181));
+        for (int i = 1; i <= 6; i++) {
+            slot.update(DataPointType.WIND, new DataPoint(i, i, 0, i, i), i * 1000L);
+        }
+        slot.update(DataPointType.HUMIDTY, new DataPoint(1, 1, 0, 1, 1), 7000L);
+
+        List<Reading> readings = slot.history(DataPointType.WIND, 0, Long.MAX_VALUE);
+        assertEquals(4, readings.size());
+        assertEquals(3000L, readings.get(0).getTime());
+        assertEquals(6, readings.get(3).getDataPoint().getCount());
+        assertEquals(2, slot.history(DataPointType.WIND, 4000L, 5000L).size());
+        assertEquals(0, slot.history(DataPointType.PRESSURE, 0, Long.MAX_VALUE).size());
+
+        store.remove("BOS");
+        slot = store.add(new AirportData("LGA", 40.777245, -73.872608));
+        assertEquals(0, slot.history(DataPointType.WIND, 0, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    public void testRollupsAggregateReadings() throws Exception {
+        AirportStore store = new AirportStore(new SnapshotWeatherStorage(), new WeatherHistory(0),
+                new WeatherRollups(2, 24, 7));
+        AirportSlot slot = store.add(new AirportData("BOS", 42.364347, -71.005181));
+        long minute = WeatherRollups.Resolution.MINUTE.millis();
+        double[] means = {10, 30, 20, 5};
+        long[] times = {0, 10000L, 70000L, 2 * minute + 1};
+        for (int i = 0; i < means.length; i++) {
+            DataPoint dp = new DataPoint(0, 0, 0, 0, 1);
+            dp.setMean(means[i]);
+            slot.update(DataPointType.WIND, dp, times[i]);
+        }
+        // arrives late, the minute it belongs to has left the ring
+        DataPoint late = new DataPoint(0, 0, 0, 0, 1);
+        late.setMean(99);
+        slot.update(DataPointType.WIND, late, 5000L);
+
+        List<Aggregate> minutes = slot.rollup(DataPointType.WIND, WeatherRollups.Resolution.MINUTE,
+                Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals(2, minutes.size());
+        assertEquals(minute, minutes.get(0).getStart());
+        assertEquals(20, minutes.get(0).getMean(), 0);
+        assertEquals(5, minutes.get(1).getLast(), 0);
+
+        List<Aggregate> hours = slot.rollup(DataPointType.WIND, WeatherRollups.Resolution.HOUR, 0, 0);
+        assertEquals(1, hours.size());
+        assertEquals(5, hours.get(0).getCount());
+        assertEquals(5, hours.get(0).getMin(), 0);
+        assertEquals(99, hours.get(0).getMax(), 0);
+        assertEquals(164, hours.get(0).getSum(), 0);
+        assertEquals(5, hours.get(0).getLast(), 0);
+        assertEquals(0, slot.rollup(DataPointType.WIND, WeatherRollups.Resolution.DAY, 86400000L, Long.MAX_VALUE)
+                .size());
+    }
+}
@@ -0,0 +1,59 @@
+package com.crossover.trial.weather;
+
+import com.crossover.trial.weather.client.BinaryCollectorClient;
+import com.crossover.trial.weather.endpoint.api.WeatherQueryEndpoint;
+import com.crossover.trial.weather.endpoint.impl.RestWeatherQueryEndpoint;
+import com.crossover.trial.weather.entity.AtmosphericInformation;
+import com.crossover.trial.weather.entity.DataPoint;
+import com.crossover.trial.weather.entity.DataPointType;
+import com.crossover.trial.weather.server.BinaryCollectorListener;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class BinaryCollectorTest {
+
+    private WeatherQueryEndpoint _query = new RestWeatherQueryEndpoint();
+
+    private BinaryCollectorListener _listener;
+
+    @Before
+    public void setUp() throws Exception {
+        RestWeatherQueryEndpoint.init();
+        _listener = BinaryCollectorListener.start("localhost", 0);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        _listener.shutdownNow();
+    }
+
+    @Test
+    public void testUpdatesOverBinaryProtocol() throws Exception {
+        DataPoint wind = new DataPoint.Builder()
+                .withCount(10).withFirst(10).withMedian(20).withLast(30).withMean(22).build();
+        wind.setMean(20.5);
+        try (BinaryCollectorClient client = new BinaryCollectorClient("localhost", _listener.getPort())) {
+            for (int i = 0; i < 3000; i++) {
+                client.send("JFK", DataPointType.WIND, wind, 0);
+            }
+            client.send("BOS", DataPointType.WIND, wind, 1000L);
+            client.send("XXX", DataPointType.WIND, wind, 0);
+            client.send("BOS", DataPointType.PRESSURE, wind, 0);
+            client.send("BOS", DataPointType.WIND, wind, System.currentTimeMillis() + 3600000L);
+            assertEquals(3, client.flush());
+        }
+
+        List<AtmosphericInformation> ais = (List<AtmosphericInformation>) _query.weather("BOS", "0").getEntity();
+        assertEquals(wind, ais.get(0).getWind());
+        assertEquals(1000L, ais.get(0).getLastUpdateTime());
+        assertEquals(null, ais.get(0).getPressure());
+        ais = (List<AtmosphericInformation>) _query.weather("JFK", "0").getEntity();
+        assertEquals(wind, ais.get(0).getWind());
+    }
+}
@@ -0,0 +1,119 @@
+package com.crossover.trial.weather;
+
+import com.crossover.trial.weather.entity.AirportData;
+import com.crossover.trial.weather.entity.AtmosphericInformation;
+import com.crossover.trial.weather.entity.DataPointType;
+import com.crossover.trial.weather.persistence.Checkpoint;
+import com.crossover.trial.weather.persistence.Checkpointer;
+import com.crossover.trial.weather.persistence.WriteAheadLog;
+import com.crossover.trial.weather.store.AirportStore;
+import com.crossover.trial.weather.store.IataCode;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class CheckpointTest {
+
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
+    @Test
+    public void testLoadRestoresAirportsAndWeather() throws Exception {
+        AirportStore store = new AirportStore();
+        store.add(new AirportData("BOS", 42.364347, -71.005181));
+        store.add(new AirportData("JFK", 40.639751, -73.778925));
+        store.slot("BOS").update(DataPointType.WIND, 22.5, 10, 20, 30, 12, 1000L);
+        store.slot("BOS").update(DataPointType.PRESSURE, 1013.25, 1000, 1010, 1020, 4, 2000L);
+        Path file = Checkpoint.write(store, 7, _folder.getRoot().toPath());
+
+        AirportStore loaded = new AirportStore();
+        loaded.add(new AirportData("LHR", 51.4775, -0.461389));
+        assertEquals(7, Checkpoint.load(file, loaded));
+        assertEquals(2, loaded.size());
+        assertNull(loaded.slot("LHR"));
+        assertEquals(40.639751, loaded.slot("JFK").getAirport().getLatitude(), 0);
+        assertEquals(-71.005181, loaded.slot("BOS").getAirport().getLongitude(), 0);
+
+        AtmosphericInformation ai = loaded.slot("BOS").getAtmosphericInformation();
+        assertEquals(22.5, ai.getWind().getMean(), 0);
+        assertEquals(30, ai.getWind().getThird());
+        assertEquals(4, ai.getPressure().getCount());
+        assertNull(ai.getTemperature());
+        assertEquals(2000L, ai.getLastUpdateTime());
+        assertEquals(false, loaded.slot("JFK").hasInformation());
+    }
+
+    @Test
+    public void testDamagedCheckpointIsRejected() throws Exception {
+        AirportStore store = new AirportStore();
+        store.add(new AirportData("BOS", 42.364347, -71.005181));
+        Path file = Checkpoint.write(store, 1, _folder.getRoot().toPath());
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(24);
+            raf.write(0x7f);
+        }
+        try {
+            Checkpoint.load(file, new AirportStore());
+            fail("damaged checkpoint loaded");
+        } catch (IOException expected) {
+            // the checksum does not match
+        }
+    }
+
+    @Test
+    public void testCheckpointTruncatesLog() throws Exception {
+        Path dir = _folder.getRoot().toPath();
+        AirportStore store = new AirportStore();
+        store.add(new AirportData("BOS", 42.364347, -71.005181));
+        try (WriteAheadLog wal = new WriteAheadLog(dir, 4096, WriteAheadLog.FsyncPolicy.NONE, 0)) {
+            wal.logAddAirport(IataCode.encode("BOS"), 42.364347, -71.005181);
+            Checkpointer checkpointer = new Checkpointer(dir, store, wal);
+            checkpointer.checkpoint();
+            wal.logRemoveAirport(IataCode.encode("BOS"));
+            Path file = checkpointer.checkpoint();
+            wal.logUpdate(IataCode.encode("JFK"), DataPointType.WIND, 1, 2, 3, 4, 5, 6);
+            checkpointer.close();
+            assertEquals(file, Checkpoint.latest(dir));
+        }
+
+        // a restart loads the checkpoint and replays only what came after it
+        long sequence = Checkpoint.load(Checkpoint.latest(dir), new AirportStore());
+        try (WriteAheadLog wal = new WriteAheadLog(dir, 4096, WriteAheadLog.FsyncPolicy.NONE, 0)) {
+            AtomicInteger updates = new AtomicInteger();
+            assertEquals(1, wal.replay(new WriteAheadLog.Handler() {
+                @Override
+                public void addAirport(int iataCode, double latitude, double longitude) {
+                    fail("replayed a change older than the checkpoint");
+                }
+
+                @Override
+                public void removeAirport(int iataCode) {
+                    fail("replayed a change older than the checkpoint");
+                }
+
+                @Override
+                public void update(int iataCode, DataPointType type, double mean, int first, int second,
+                                   int third, int count, long time) {
+                    updates.incrementAndGet();
+                }
+            }, sequence));
+            assertEquals(1, updates.get());
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            // the checkpoint, the segment after it and the segment opened by the restart
+            assertEquals(3, files.count());
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.crossover.trial.weather;
+
+import com.crossover.trial.weather.entity.DataPoint;
+import com.crossover.trial.weather.entity.DataPointDecoder;
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DataPointDecoderTest {
+
+    private Gson _gson = new Gson();
+
+    private DataPointDecoder _decoder = DataPointDecoder.forCurrentThread();
+
+    @Test
+    public void testDecodesLikeGson() throws Exception {
+        String[] inputs = {
+                _gson.toJson(new DataPoint.Builder().withFirst(10).withMedian(20).withLast(30).withMean(22)
+                        .withCount(10).build()),
+                "{ \"mean\" : -12.375, \"first\":-40,\n\"third\": 2147483647, \"count\": 0 }",
+                "{\"mean\":0.1,\"second\":5}",
+                "{\"mean\":1.5E3}",
+                "{\"mean\":123456789.123456789}",
+                "{}"
+        };
+        for (String json : inputs) {
+            assertTrue(json, _decoder.decode(json));
+            DataPoint expected = _gson.fromJson(json, DataPoint.class);
+            assertEquals(json, expected.getMean(), _decoder.getMean(), 0.0);
+            assertEquals(json, expected.getFirst(), _decoder.getFirst());
+            assertEquals(json, expected.getSecond(), _decoder.getSecond());
+            assertEquals(json, expected.getThird(), _decoder.getThird());
+            assertEquals(json, expected.getCount(), _decoder.getCount());
+        }
+    }
+
+    @Test
+    public void testLeavesOtherInputToGson() throws Exception {
+        String[] inputs = {
+                null, "", "null", "{mean:1}", "{\"mean\":", "{\"mean\":1,}", "{\"first\":1.5}",
+                "{\"count\":\"3\"}", "{\"count\":2147483648}", "{\"mean\":01}", "{\"unknown\":1}",
+                "{\"mean\":1} trailing", "[1]"
+        };
+        for (String json : inputs) {
+            assertFalse(json, _decoder.decode(json));
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.crossover.trial.weather;
+
+import com.crossover.trial.weather.entity.AirportData;
+import com.crossover.trial.weather.entity.AtmosphericInformation;
+import com.crossover.trial.weather.entity.DataPoint;
+import com.crossover.trial.weather.entity.DataPointType;
+import com.crossover.trial.weather.entity.EncodedInformation;
+import com.crossover.trial.weather.entity.EncodedWeather;
+import com.crossover.trial.weather.store.AirportSlot;
+import com.crossover.trial.weather.store.AirportStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class EncodedWeatherTest {
+
+    private static String write(EncodedWeather weather) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        weather.writeTo(out);
+        return new String(out.toByteArray(), StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    public void testEncodingMatchesJackson() throws Exception {
+        DataPoint wind = new DataPoint.Builder()
+                .withCount(10).withFirst(10).withMedian(20).withLast(30).withMean(22).build();
+        DataPoint pressure = new DataPoint.Builder()
+                .withCount(3).withFirst(1000).withMedian(1010).withLast(1020).build();
+        pressure.setMean(1013.0 / 3);
+        AtmosphericInformation full = new AtmosphericInformation(wind, wind, null, pressure, pressure, null, 42L);
+        AtmosphericInformation empty = new AtmosphericInformation();
+
+        EncodedWeather weather = new EncodedWeather(Arrays.asList(new EncodedInformation(1, full),
+                new EncodedInformation(2, empty)));
+        assertEquals(new ObjectMapper().writeValueAsString(Arrays.asList(full, empty)), write(weather));
+        assertEquals("[]", write(new EncodedWeather(Arrays.asList())));
+        assertSame(empty, weather.get(1));
+    }
+
+    @Test
+    public void testSlotEncodingFollowsUpdates() throws Exception {
+        AirportStore store = new AirportStore();
+        AirportSlot slot = store.add(new AirportData("BOS", 42.364347, -71.005181));
+        EncodedInformation before = slot.getEncodedInformation();
+        assertSame(before, slot.getEncodedInformation());
+
+        slot.update(DataPointType.WIND, 5, 1, 2, 3, 4, 100L);
+        EncodedInformation after = slot.getEncodedInformation();
+        assertNotSame(before, after);
+        assertEquals(slot.getVersion(), after.getVersion());
+        assertEquals(5, after.getInformation().getWind().getMean(), 0);
+    }
+}
@@ -0,0 +1,56 @@
+package com.crossover.trial.weather;
+
+import com.crossover.trial.weather.store.FreshnessTracker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class FreshnessTrackerTest {
+
+    private static final long HOUR = 3600000L;
+
+    private static final long NOW = 1000 * HOUR;
+
+    private FreshnessTracker _tracker = new FreshnessTracker();
+
+    @Test
+    public void testCountsEachAirportOnce() throws Exception {
+        _tracker.touch(0, NOW);
+        _tracker.touch(0, NOW + 10);
+        _tracker.touch(0, NOW + 2 * HOUR);
+        _tracker.touch(1, NOW);
+        assertEquals(2, _tracker.freshCount(NOW + 2 * HOUR));
+    }
+
+    @Test
+    public void testUpdatesExpireAfterADay() throws Exception {
+        _tracker.touch(0, NOW);
+        _tracker.touch(1, NOW + 5 * HOUR);
+        assertEquals(2, _tracker.freshCount(NOW + 23 * HOUR));
+        assertEquals(1, _tracker.freshCount(NOW + 24 * HOUR));
+        assertEquals(0, _tracker.freshCount(NOW + 48 * HOUR));
+
+        _tracker.touch(0, NOW + 48 * HOUR);
+        assertEquals(1, _tracker.freshCount(NOW + 48 * HOUR));
+    }
+
+    @Test
+    public void testFutureTimeDoesNotExpireTheWindow() throws Exception {
+        long now = System.currentTimeMillis();
+        FreshnessTracker tracker = new FreshnessTracker();
+        tracker.touch(0, now);
+        tracker.touch(1, now + 1000 * HOUR);
+        tracker.touch(2, now);
+        assertEquals(3, tracker.freshCount(now));
+    }
+
+    @Test
+    public void testForget() throws Exception {
+        _tracker.touch(0, NOW);
+        _tracker.touch(200, NOW);
+        _tracker.forget(200);
+        _tracker.forget(300);
+        assertEquals(1, _tracker.freshCount(NOW));
+    }
+}
@@ -0,0 +1,153 @@
+package com.crossover.trial.weather;
+
+import com.crossover.trial.weather.endpoint.impl.RestWeatherQueryEndpoint;
+import com.crossover.trial.weather.entity.AirportData;
+import com.crossover.trial.weather.store.AirportSlot;
+import com.crossover.trial.weather.store.AirportStore;
+import com.crossover.trial.weather.store.GeoGrid;
+import com.crossover.trial.weather.store.IataCode;
+import com.crossover.trial.weather.store.NeighborSets;
+import com.crossover.trial.weather.store.WeatherHistory;
+import com.crossover.trial.weather.store.WeatherRollups;
+import com.crossover.trial.weather.store.WeatherStorage;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GeoGridTest {
+
+    private RestWeatherQueryEndpoint _query = new RestWeatherQueryEndpoint();
+
+    private List<AirportData> _airports = new ArrayList<>();
+
+    private GeoGrid _grid = new GeoGrid();
+
+    private AirportStore _store = new AirportStore();
+
+    @Before
+    public void setUp() throws Exception {
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            addAirport(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180);
+        }
+        // airports on the antimeridian and near the poles
+        addAirport(10, 179.9);
+        addAirport(10, -179.9);
+        addAirport(89.9, 0);
+        addAirport(-89.9, 45);
+    }
+
+    @Test
+    public void testCandidatesMatchFullScan() throws Exception {
+        double[] radii = {1, 50, 250, 1000, 5000, 20000};
+        for (int origin = 0; origin < _airports.size(); origin += 97) {
+            for (double radius : radii) {
+                assertEquals(fullScan(origin, radius), gridScan(origin, radius));
+            }
+        }
+        for (int origin = _airports.size() - 4; origin < _airports.size(); origin++) {
+            for (double radius : radii) {
+                assertEquals(fullScan(origin, radius), gridScan(origin, radius));
+            }
+        }
+    }
+
+    @Test
+    public void testStoreWithinMatchesFullScan() throws Exception {
+        double[] radii = {0.5, 50, 250, 1000, 5000, 20000, 30000};
+        for (int origin = 0; origin < _airports.size(); origin += 89) {
+            for (double radius : radii) {
+                TreeSet<Integer> found = new TreeSet<>();
+                for (int handle : _store.within(_store.slot(origin), radius, RestWeatherQueryEndpoint.R)) {
+                    found.add(handle);
+                }
+                assertEquals(fullScan(origin, radius), found);
+            }
+        }
+    }
+
+    @Test
+    public void testNeighborSetsFollowCatalogChanges() throws Exception {
+        Random random = new Random(7);
+        AirportStore tiered = new AirportStore(WeatherStorage.fromSystemProperties(),
+                WeatherHistory.fromSystemProperties(), WeatherRollups.fromSystemProperties(),
+                NeighborSets.fromSystemProperties(RestWeatherQueryEndpoint.R));
+        AirportStore plain = new AirportStore();
+        for (AirportData ad : _airports) {
+            tiered.add(ad);
+            plain.add(ad);
+        }
+        // a dense cluster, then move some airports and remove others
+        for (int i = 0; i < 300; i++) {
+            AirportData ad = new AirportData(IataCode.decode(5000 + i), 40 + random.nextDouble() * 4,
+                    -75 + random.nextDouble() * 4);
+            tiered.add(ad);
+            plain.add(ad);
+        }
+        for (int i = 0; i < 300; i += 3) {
+            String iata = IataCode.decode(5000 + i);
+            tiered.remove(iata);
+            plain.remove(iata);
+            AirportData moved = new AirportData(IataCode.decode(5001 + i), 40 + random.nextDouble() * 4,
+                    -75 + random.nextDouble() * 4);
+            tiered.add(moved);
+            plain.add(moved);
+        }
+        tiered.add(new AirportData(IataCode.decode(5000), 41, -73));
+        plain.add(new AirportData(IataCode.decode(5000), 41, -73));
+
+        for (AirportSlot slot : tiered.slots()) {
+            for (double radius : new double[] {50, 100, 250, 500}) {
+                assertArrayEquals(plain.within(plain.slot(slot.getAirport().getIata()), radius,
+                        RestWeatherQueryEndpoint.R), tiered.within(slot, radius, RestWeatherQueryEndpoint.R));
+            }
+        }
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        AirportData ad = _airports.get(0);
+        _grid.remove(0, ad.getLatitude(), ad.getLongitude());
+        assertTrue(!gridScan(0, 10).contains(0));
+    }
+
+    private void addAirport(double latitude, double longitude) {
+        int handle = _airports.size();
+        AirportData ad = new AirportData(IataCode.decode(handle), latitude, longitude);
+        _airports.add(ad);
+        _grid.add(handle, latitude, longitude);
+        _store.add(ad);
+    }
+
+    private TreeSet<Integer> fullScan(int origin, double radius) {
+        TreeSet<Integer> found = new TreeSet<>();
+        for (int i = 0; i < _airports.size(); i++) {
+            if (_query.calculateDistance(_airports.get(origin), _airports.get(i)) <= radius) {
+                found.add(i);
+            }
+        }
+        return found;
+    }
+
+    private TreeSet<Integer> gridScan(int origin, double radius) {
+        TreeSet<Integer> found = new TreeSet<>();
+        AirportData ad = _airports.get(origin);
+        _grid.cells(ad.getLatitude(), ad.getLongitude(), radius / RestWeatherQueryEndpoint.R, handles -> {
+            for (int handle : handles) {
+                if (_query.calculateDistance(ad, _airports.get(handle)) <= radius) {
+                    found.add(handle);
+                }
+            }
+        });
+        return found;
+    }
+}
@@ -0,0 +1,146 @@
+package com.crossover.trial.weather;
+
+import com.crossover.trial.weather.entity.AirportData;
+import com.crossover.trial.weather.stats.CountMinSketch;
+import com.crossover.trial.weather.stats.ExactFrequencyCounter;
+import com.crossover.trial.weather.stats.QueryStatistics;
+import com.crossover.trial.weather.stats.RadiusHistogram;
+import com.crossover.trial.weather.stats.SketchFrequencyCounter;
+import com.crossover.trial.weather.store.AirportSlot;
+import com.crossover.trial.weather.store.AirportStore;
+import com.crossover.trial.weather.store.IataCode;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class QueryStatisticsTest {
+
+    private AirportStore _store = new AirportStore();
+
+    private QueryStatistics _stats = new QueryStatistics(new ExactFrequencyCounter());
+
+    @Before
+    public void setUp() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            _store.add(new AirportData(IataCode.decode(i), 0, 0));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSketchNeedsATopKey() throws Exception {
+        new SketchFrequencyCounter(0);
+    }
+
+    @Test
+    public void testRadiusBuckets() throws Exception {
+        assertEquals(0, RadiusHistogram.bucket(0));
+        assertEquals(0, RadiusHistogram.bucket(-5));
+        assertEquals(0, RadiusHistogram.bucket(Double.NaN));
+        assertEquals(1, RadiusHistogram.bucket(1));
+        assertEquals(2, RadiusHistogram.bucket(3.9));
+        assertEquals(8, RadiusHistogram.bucket(200));
+        assertEquals(RadiusHistogram.BUCKETS - 1, RadiusHistogram.bucket(1e9));
+    }
+
+    @Test
+    public void testConcurrentRecordingKeepsAllCounts() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            pool.execute(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    _stats.record(_store.slot(i % 100), 200);
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.SECONDS);
+
+        assertEquals(80000, _stats.total());
+        assertEquals(0.01, _stats.fractions(_store).get(IataCode.decode(42)), 1e-9);
+        assertEquals(100, _stats.fractions(_store).size());
+        assertEquals(80000, _stats.radiusHistogram()[RadiusHistogram.bucket(200)]);
+    }
+
+    @Test
+    public void testForget() throws Exception {
+        _stats.record(_store.slot(1), 0);
+        _stats.record(_store.slot(2), 0);
+        _stats.forget(_store.slot(1));
+        _stats.record(null, 0);
+        assertEquals(1, _stats.total());
+        assertEquals(0.0, _stats.fractions(_store).get(IataCode.decode(1)), 0);
+        assertEquals(1.0, _stats.fractions(_store).get(IataCode.decode(2)), 0);
+        assertEquals(3, _stats.radiusHistogram()[0]);
+    }
+
+    @Test
+    public void testReusedHandleDoesNotInheritQueries() throws Exception {
+        AirportSlot removed = _store.slot(1);
+        _stats.record(removed, 0);
+        _store.remove(IataCode.decode(1));
+        _stats.forget(removed);
+        // a query that looked the airport up before it was removed
+        _stats.record(removed, 0);
+        AirportSlot reused = _store.add(new AirportData("ZZZ", 0, 0));
+        assertEquals(removed.getHandle(), reused.getHandle());
+        _stats.record(removed, 0);
+        _stats.record(reused, 0);
+        assertEquals(1, _stats.total());
+        assertEquals(1.0, _stats.fractions(_store).get("ZZZ"), 0);
+    }
+
+    @Test
+    public void testSketchReportsHeavyHitters() throws Exception {
+        QueryStatistics sketch = new QueryStatistics(new SketchFrequencyCounter(3));
+        for (int i = 0; i < 100; i++) {
+            for (int n = 0; n <= i; n++) {
+                sketch.record(_store.slot(i), 0);
+            }
+        }
+        Map<String, Double> top = sketch.fractions(_store);
+        assertEquals(3, top.size());
+        assertTrue(top.containsKey(IataCode.decode(99)));
+        assertTrue(top.containsKey(IataCode.decode(98)));
+        assertTrue(top.containsKey(IataCode.decode(97)));
+    }
+
+    @Test
+    public void testSketchEvictsRemovedAirports() throws Exception {
+        QueryStatistics sketch = new QueryStatistics(new SketchFrequencyCounter(3));
+        for (int i = 0; i < 4; i++) {
+            for (int n = 0; n <= 10 * i; n++) {
+                sketch.record(_store.slot(i), 0);
+            }
+        }
+        AirportSlot removed = _store.slot(3);
+        _store.remove(IataCode.decode(3));
+        sketch.forget(removed);
+        sketch.record(removed, 0);
+        sketch.record(_store.slot(0), 0);
+        Map<String, Double> top = sketch.fractions(_store);
+        assertEquals(3, top.size());
+        assertTrue(top.containsKey(IataCode.decode(0)));
+        assertTrue(!top.containsKey(IataCode.decode(3)));
+    }
+
+    @Test
+    public void testCountMinNeverUndercounts() throws Exception {
+        CountMinSketch sketch = new CountMinSketch(4, 64);
+        for (int key = 0; key < 1000; key++) {
+            for (int n = 0; n < key % 7; n++) {
+                sketch.increment(key);
+            }
+        }
+        for (int key = 0; key < 1000; key++) {
+            assertTrue(sketch.estimate(key) >= key % 7);
+        }
+    }
+}
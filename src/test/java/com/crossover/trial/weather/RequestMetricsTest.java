@@ -0,0 +1,113 @@
+package com.crossover.trial.weather;
+
+import com.crossover.trial.weather.endpoint.api.WeatherQueryEndpoint;
+import com.crossover.trial.weather.endpoint.impl.RequestMetricsListener;
+import com.crossover.trial.weather.endpoint.impl.RestWeatherCollectorEndpoint;
+import com.crossover.trial.weather.endpoint.impl.RestWeatherQueryEndpoint;
+import com.crossover.trial.weather.stats.LatencyHistogram;
+import com.crossover.trial.weather.stats.RequestMetrics;
+
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ApplicationHandler;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RequestMetricsTest {
+
+    @Test
+    public void testQuantilesWithinOnePercent() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 10000; micros++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(micros));
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(10000, snapshot.getCount());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(5000 * 10001L), snapshot.getSum());
+        assertEquals(5000000, snapshot.valueAt(0.5), 50000);
+        assertEquals(9900000, snapshot.valueAt(0.99), 99000);
+        assertEquals(9990000, snapshot.valueAt(0.999), 99900);
+        assertTrue(snapshot.valueAt(1) >= 10000000);
+    }
+
+    @Test
+    public void testSmallAndHugeValues() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.snapshot().valueAt(0.5));
+        histogram.record(-5);
+        histogram.record(100);
+        histogram.record(TimeUnit.HOURS.toNanos(1));
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(0, snapshot.valueAt(0.1));
+        assertEquals(100, snapshot.valueAt(0.5));
+        assertTrue(snapshot.valueAt(1) >= TimeUnit.SECONDS.toNanos(60));
+
+        histogram.clear();
+        assertEquals(0, histogram.snapshot().getCount());
+    }
+
+    @Test
+    public void testPrometheusFormat() throws Exception {
+        RequestMetrics metrics = new RequestMetrics();
+        metrics.endpoint("WeatherQueryEndpoint.weather").record(TimeUnit.MILLISECONDS.toNanos(2), false);
+        metrics.endpoint("WeatherQueryEndpoint.weather").record(TimeUnit.MILLISECONDS.toNanos(4), true);
+        metrics.stage("scan").record(TimeUnit.MICROSECONDS.toNanos(30));
+
+        String text = metrics.toPrometheus();
+        assertTrue(text.contains("# TYPE weather_request_duration_seconds summary\n"));
+        assertTrue(text.contains("weather_request_duration_seconds_count{endpoint=\"WeatherQueryEndpoint.weather\"} 2\n"));
+        assertTrue(text.contains("weather_request_errors_total{endpoint=\"WeatherQueryEndpoint.weather\"} 1\n"));
+        assertTrue(text.contains("weather_request_duration_seconds{endpoint=\"WeatherQueryEndpoint.weather\","
+                + "quantile=\"0.999\"} 0.004"));
+        assertTrue(text.contains("weather_stage_duration_seconds_count{stage=\"scan\"} 1\n"));
+    }
+
+    @Test
+    public void testEndpointRequestsAreTimed() throws Exception {
+        ApplicationHandler handler = new ApplicationHandler(new ResourceConfig(RestWeatherCollectorEndpoint.class,
+                RestWeatherQueryEndpoint.class, RequestMetricsListener.class));
+        WeatherQueryEndpoint query = new RestWeatherQueryEndpoint();
+        String ping = "{endpoint=\"WeatherQueryEndpoint.ping\"}";
+        String add = "{endpoint=\"WeatherCollectorEndpoint.addAirport\"}";
+        String before = query.metrics();
+
+        assertEquals(200, request(handler, "GET", "/query/ping"));
+        assertEquals(200, request(handler, "GET", "/query/ping"));
+        assertEquals(500, request(handler, "POST", "/collect/airport/XYZ/north/west"));
+
+        String after = query.metrics();
+        assertEquals(2, value(after, "weather_request_duration_seconds_count" + ping)
+                - value(before, "weather_request_duration_seconds_count" + ping));
+        assertEquals(0, value(after, "weather_request_errors_total" + ping)
+                - value(before, "weather_request_errors_total" + ping));
+        assertEquals(1, value(after, "weather_request_errors_total" + add)
+                - value(before, "weather_request_errors_total" + add));
+        assertTrue(after.contains("weather_request_duration_seconds_count{endpoint=\"WeatherQueryEndpoint.rollup\"}"));
+    }
+
+    private static int request(ApplicationHandler handler, String method, String path) throws Exception {
+        ContainerRequest request = new ContainerRequest(URI.create("http://localhost/"),
+                URI.create("http://localhost" + path), method, null, new MapPropertiesDelegate());
+        try {
+            return handler.apply(request).get().getStatus();
+        } catch (ExecutionException e) {
+            return 500;
+        }
+    }
+
+    private static long value(String metrics, String series) {
+        for (String line : metrics.split("\n")) {
+            if (line.startsWith(series + " ")) {
+                return Long.parseLong(line.substring(series.length() + 1));
+            }
+        }
+        return 0;
+    }
+}
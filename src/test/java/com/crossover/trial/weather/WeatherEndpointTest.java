@@ -4,8 +4,11 @@ import com.crossover.trial.weather.endpoint.api.WeatherCollectorEndpoint;
 import com.crossover.trial.weather.endpoint.api.WeatherQueryEndpoint;
 import com.crossover.trial.weather.endpoint.impl.RestWeatherCollectorEndpoint;
 import com.crossover.trial.weather.endpoint.impl.RestWeatherQueryEndpoint;
+import com.crossover.trial.weather.entity.Aggregate;
+import com.crossover.trial.weather.entity.AirportData;
 import com.crossover.trial.weather.entity.AtmosphericInformation;
 import com.crossover.trial.weather.entity.DataPoint;
+import com.crossover.trial.weather.entity.Reading;
 import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParser;
@@ -13,7 +16,12 @@ import com.google.gson.JsonParser;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.core.Response;
 
 import static org.junit.Assert.assertEquals;
 
@@ -41,6 +49,7 @@ public class WeatherEndpointTest {
         JsonElement pingResult = new JsonParser().parse(ping);
         assertEquals(1, pingResult.getAsJsonObject().get("datasize").getAsInt());
         assertEquals(5, pingResult.getAsJsonObject().get("iata_freq").getAsJsonObject().entrySet().size());
+        assertEquals(1, pingResult.getAsJsonObject().get("cache").getAsJsonObject().get("misses").getAsInt());
     }
 
     @Test
@@ -83,4 +92,105 @@ public class WeatherEndpointTest {
         assertEquals(ais.get(0).getCloudCover(), cloudCoverDp);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testUpdateRejectsInvalidData() throws Exception {
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(),
+                _update.updateWeather("BOS", "snow", _gson.toJson(_dp)).getStatus());
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(),
+                _update.updateWeather("XXX", "wind", _gson.toJson(_dp)).getStatus());
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(),
+                _update.updateWeather("BOS", "pressure", _gson.toJson(_dp)).getStatus());
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(),
+                _update.updateWeather("BOS", "wind", "{mean:").getStatus());
+        assertEquals(Response.Status.OK.getStatusCode(),
+                _update.updateWeather("BOS", "Humidty", _gson.toJson(_dp)).getStatus());
+
+        List<AtmosphericInformation> ais = (List<AtmosphericInformation>) _query.weather("BOS", "0").getEntity();
+        assertEquals(_dp, ais.get(0).getHumidity());
+        assertEquals(null, ais.get(0).getPressure());
+    }
+
+    @Test
+    public void testUpdateWeatherBatch() throws Exception {
+        DataPoint pressureDp = new DataPoint.Builder()
+                .withFirst(700).withLast(800).withMean(750).withMedian(740).withCount(10).build();
+        String batch = "["
+                + "{\"iata\":\"BOS\",\"pointType\":\"wind\",\"datapoint\":" + _gson.toJson(_dp) + "},"
+                + "{\"iata\":\"BOS\",\"pointType\":\"pressure\",\"datapoint\":" + _gson.toJson(pressureDp) + "},"
+                + "{\"iata\":\"XXX\",\"pointType\":\"wind\",\"datapoint\":" + _gson.toJson(_dp) + "},"
+                + "{\"iata\":\"BOS\",\"pointType\":\"pressure\",\"datapoint\":" + _gson.toJson(_dp) + "},"
+                + "{\"iata\":\"JFK\",\"pointType\":\"snow\",\"datapoint\":" + _gson.toJson(_dp) + "}"
+                + "]";
+        Response response = _update.updateWeatherBatch(new ByteArrayInputStream(batch.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+
+        List<Map<String, Object>> statuses = (List<Map<String, Object>>) response.getEntity();
+        assertEquals(5, statuses.size());
+        int[] expected = {200, 200, 400, 400, 400};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], statuses.get(i).get("status"));
+        }
+
+        List<AtmosphericInformation> ais = (List<AtmosphericInformation>) _query.weather("BOS", "0").getEntity();
+        assertEquals(_dp, ais.get(0).getWind());
+        assertEquals(pressureDp, ais.get(0).getPressure());
+
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), _update.updateWeatherBatch(
+                new ByteArrayInputStream("[{\"iata\":".getBytes(StandardCharsets.UTF_8))).getStatus());
+    }
+
+    @Test
+    public void testHistory() throws Exception {
+        DataPoint windDp = new DataPoint.Builder()
+                .withFirst(0).withLast(20).withMean(5).withMedian(10).withCount(4).build();
+        _update.updateWeather("BOS", "wind", _gson.toJson(windDp));
+
+        List<Reading> readings = (List<Reading>) _query.history("BOS", "wind", null, null).getEntity();
+        assertEquals(2, readings.size());
+        assertEquals(_dp, readings.get(0).getDataPoint());
+        assertEquals(windDp, readings.get(1).getDataPoint());
+
+        readings = (List<Reading>) _query.history("BOS", "wind", "0", "1").getEntity();
+        assertEquals(0, readings.size());
+        assertEquals(Response.Status.NOT_FOUND.getStatusCode(), _query.history("XXX", "wind", null, null).getStatus());
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), _query.history("BOS", "snow", null, null).getStatus());
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), _query.history("BOS", "wind", "x", null).getStatus());
+    }
+
+    @Test
+    public void testRollup() throws Exception {
+        List<Aggregate> days = (List<Aggregate>) _query.rollup("BOS", "wind", "day", null, null).getEntity();
+        assertEquals(1, days.size());
+        assertEquals(1, days.get(0).getCount());
+        assertEquals(_dp.getMean(), days.get(0).getLast(), 0);
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(),
+                _query.rollup("BOS", "wind", "week", null, null).getStatus());
+        assertEquals(Response.Status.NOT_FOUND.getStatusCode(),
+                _query.rollup("XXX", "wind", "day", null, null).getStatus());
+    }
+
+    @Test
+    public void testAddAirportRejectsInvalidCode() throws Exception {
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(),
+                _update.addAirport("sfo", "37.6", "-122.3").getStatus());
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(),
+                _update.addAirport("KSFO", "37.6", "-122.3").getStatus());
+        assertEquals(Response.Status.OK.getStatusCode(), _update.addAirport("SFO", "37.6", "-122.3").getStatus());
+    }
+
+    @Test
+    public void testImportAirports() throws Exception {
+        String dat = "1,\"Logan\",\"Boston\",\"United States\",\"BOS\",\"KBOS\",42.364347,-71.005181,19,-5,\"A\"\n"
+                + "2,\"San Francisco Intl\",\"San Francisco\",\"United States\",\"SFO\",\"KSFO\",37.618972,-122.374889\n";
+        Response response = _update.importAirports(new ByteArrayInputStream(dat.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        // BOS is already known at the same position
+        assertEquals(1, ((Map<String, Object>) response.getEntity()).get("imported"));
+        response = _update.importAirports(new ByteArrayInputStream(dat.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(0, ((Map<String, Object>) response.getEntity()).get("imported"));
+
+        assertEquals(37.618972, ((AirportData) _update.getAirport("SFO").getEntity()).getLatitude(), 0);
+        List<AtmosphericInformation> ais = (List<AtmosphericInformation>) _query.weather("BOS", "0").getEntity();
+        assertEquals(_dp, ais.get(0).getWind());
+    }
+}
@@ -0,0 +1,101 @@
+package com.crossover.trial.weather;
+
+import com.crossover.trial.weather.cache.WeatherQueryCache;
+import com.crossover.trial.weather.entity.AirportData;
+import com.crossover.trial.weather.entity.AtmosphericInformation;
+import com.crossover.trial.weather.entity.DataPointType;
+import com.crossover.trial.weather.store.AirportSlot;
+import com.crossover.trial.weather.store.AirportStore;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class WeatherQueryCacheTest {
+
+    private AirportStore _store;
+
+    private AirportSlot _bos;
+
+    private AirportSlot _jfk;
+
+    @Before
+    public void setUp() throws Exception {
+        _store = new AirportStore();
+        _bos = _store.add(new AirportData("BOS", 42.364347, -71.005181));
+        _jfk = _store.add(new AirportData("JFK", 40.639751, -73.778925));
+    }
+
+    private WeatherQueryCache.Result result(AirportSlot origin, AirportSlot... slots) {
+        long[] versions = new long[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            versions[i] = slots[i].getVersion();
+        }
+        List<AtmosphericInformation> value = Collections.singletonList(origin.getAtmosphericInformation());
+        return new WeatherQueryCache.Result(_store.version(), origin, slots, versions, value);
+    }
+
+    @Test
+    public void testResultIsReusedUntilAirportChanges() throws Exception {
+        WeatherQueryCache cache = new WeatherQueryCache(_store, 16);
+        assertNull(cache.get(_bos, 500));
+        WeatherQueryCache.Result result = result(_bos, _bos, _jfk);
+        cache.put(_bos, 500, result);
+        assertSame(result.getValue(), cache.get(_bos, 500));
+        assertNull(cache.get(_bos, 250));
+
+        _jfk.update(DataPointType.WIND, 1, 2, 3, 4, 5, 6);
+        assertNull(cache.get(_bos, 500));
+        assertEquals(Long.valueOf(1), cache.statistics().get("hits"));
+        assertEquals(Long.valueOf(3), cache.statistics().get("misses"));
+    }
+
+    @Test
+    public void testCatalogChangeInvalidates() throws Exception {
+        WeatherQueryCache cache = new WeatherQueryCache(_store, 16);
+        cache.put(_bos, 0, result(_bos, _bos));
+        _store.add(new AirportData("LGA", 40.777245, -73.872608));
+        assertNull(cache.get(_bos, 0));
+        assertEquals(Long.valueOf(0), cache.statistics().get("size"));
+    }
+
+    @Test
+    public void testFrequentQueriesAreKept() throws Exception {
+        WeatherQueryCache cache = new WeatherQueryCache(_store, 2);
+        for (int i = 0; i < 5; i++) {
+            cache.get(_bos, 1);
+            cache.get(_bos, 2);
+        }
+        cache.put(_bos, 1, result(_bos, _bos));
+        cache.put(_bos, 2, result(_bos, _bos));
+
+        // a one-off query is not admitted over the popular ones
+        cache.get(_bos, 3);
+        cache.put(_bos, 3, result(_bos, _bos));
+        assertNull(cache.get(_bos, 3));
+        assertEquals(Long.valueOf(0), cache.statistics().get("evictions"));
+
+        // a query that became more popular replaces the least recently used one
+        for (int i = 0; i < 10; i++) {
+            cache.get(_bos, 4);
+        }
+        cache.get(_bos, 2);
+        cache.put(_bos, 4, result(_bos, _bos));
+        assertEquals(Long.valueOf(1), cache.statistics().get("evictions"));
+        assertNull(cache.get(_bos, 1));
+        assertEquals(Long.valueOf(2), cache.statistics().get("size"));
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        WeatherQueryCache cache = new WeatherQueryCache(_store, 0);
+        cache.put(_bos, 0, result(_bos, _bos));
+        assertNull(cache.get(_bos, 0));
+    }
+}
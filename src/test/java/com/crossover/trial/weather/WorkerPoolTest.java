@@ -0,0 +1,41 @@
+package com.crossover.trial.weather;
+
+import com.crossover.trial.weather.server.WorkerPool;
+
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class WorkerPoolTest {
+
+    @Test
+    public void testCreate() throws Exception {
+        assertNull(WorkerPool.create("default"));
+        ExecutorService fixed = WorkerPool.create("fixed:4");
+        assertEquals(4, ((ThreadPoolExecutor) fixed).getMaximumPoolSize());
+        fixed.shutdown();
+
+        // a virtual thread per task, or a cached pool before Java 21
+        ExecutorService virtual = WorkerPool.create("Virtual");
+        assertEquals(Integer.valueOf(7), virtual.submit(() -> 7).get(10, TimeUnit.SECONDS));
+        virtual.shutdown();
+    }
+
+    @Test
+    public void testUnknownSpec() throws Exception {
+        for (String spec : new String[] {"fixed:0", "fixed:x", "threads"}) {
+            try {
+                WorkerPool.create(spec);
+                fail("accepted " + spec);
+            } catch (IllegalArgumentException expected) {
+                // reported to the operator at startup
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.crossover.trial.weather;
+
+import com.crossover.trial.weather.entity.DataPointType;
+import com.crossover.trial.weather.persistence.WriteAheadLog;
+import com.crossover.trial.weather.store.IataCode;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class WriteAheadLogTest {
+
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
+    /** records replayed records as strings */
+    private static class Recorder implements WriteAheadLog.Handler {
+        final List<String> records = new ArrayList<>();
+
+        @Override
+        public void addAirport(int iataCode, double latitude, double longitude) {
+            records.add("add " + IataCode.decode(iataCode) + " " + latitude + " " + longitude);
+        }
+
+        @Override
+        public void removeAirport(int iataCode) {
+            records.add("remove " + IataCode.decode(iataCode));
+        }
+
+        @Override
+        public void update(int iataCode, DataPointType type, double mean, int first, int second, int third,
+                           int count, long time) {
+            records.add(IataCode.decode(iataCode) + " " + type + " " + mean + " " + first + " " + second + " "
+                    + third + " " + count + " " + time);
+        }
+    }
+
+    @Test
+    public void testReplayAcrossSegmentsAndRestarts() throws Exception {
+        Path dir = _folder.getRoot().toPath();
+        try (WriteAheadLog wal = new WriteAheadLog(dir, 256, WriteAheadLog.FsyncPolicy.INTERVAL, 1)) {
+            wal.logAddAirport(IataCode.encode("BOS"), 42.364347, -71.005181);
+            for (int i = 0; i < 20; i++) {
+                wal.logUpdate(IataCode.encode("BOS"), DataPointType.WIND, i + 0.5, 1, 2, 3, i, 1000L + i);
+            }
+        }
+        try (WriteAheadLog wal = new WriteAheadLog(dir, 256, WriteAheadLog.FsyncPolicy.NONE, 0)) {
+            assertEquals(21, wal.replay(new Recorder()));
+            wal.logRemoveAirport(IataCode.encode("BOS"));
+        }
+
+        Recorder recorder = new Recorder();
+        try (WriteAheadLog wal = new WriteAheadLog(dir, 256, WriteAheadLog.FsyncPolicy.NONE, 0)) {
+            assertEquals(22, wal.replay(recorder));
+        }
+        assertEquals("add BOS 42.364347 -71.005181", recorder.records.get(0));
+        assertEquals("BOS WIND 19.5 1 2 3 19 1019", recorder.records.get(20));
+        assertEquals("remove BOS", recorder.records.get(21));
+    }
+
+    @Test
+    public void testReplayStopsAtDamagedRecord() throws Exception {
+        Path dir = _folder.getRoot().toPath();
+        try (WriteAheadLog wal = new WriteAheadLog(dir, 4096, WriteAheadLog.FsyncPolicy.NONE, 0)) {
+            for (int i = 0; i < 3; i++) {
+                wal.logUpdate(IataCode.encode("JFK"), DataPointType.HUMIDTY, i, 0, 0, 0, 0, i);
+            }
+        }
+        // flip a byte in the payload of the last record, as a torn write would
+        try (RandomAccessFile file = new RandomAccessFile(dir.resolve(String.format("wal-%020d.log", 1)).toFile(),
+                "rw")) {
+            file.seek(2 * 46 + 10);
+            file.write(0x7f);
+        }
+
+        Recorder recorder = new Recorder();
+        try (WriteAheadLog wal = new WriteAheadLog(dir, 4096, WriteAheadLog.FsyncPolicy.NONE, 0)) {
+            assertEquals(2, wal.replay(recorder));
+        }
+        assertEquals(2, recorder.records.size());
+    }
+
+    @Test
+    public void testReplayContinuesAfterDamagedSegment() throws Exception {
+        Path dir = _folder.getRoot().toPath();
+        try (WriteAheadLog wal = new WriteAheadLog(dir, 4096, WriteAheadLog.FsyncPolicy.NONE, 0)) {
+            for (int i = 0; i < 3; i++) {
+                wal.logUpdate(IataCode.encode("JFK"), DataPointType.HUMIDTY, i, 0, 0, 0, 0, i);
+            }
+        }
+        // a torn tail in segment 1, then a restart that logs into segment 2
+        try (RandomAccessFile file = new RandomAccessFile(dir.resolve(String.format("wal-%020d.log", 1)).toFile(),
+                "rw")) {
+            file.seek(46 + 10);
+            file.write(0x7f);
+        }
+        try (WriteAheadLog wal = new WriteAheadLog(dir, 4096, WriteAheadLog.FsyncPolicy.NONE, 0)) {
+            wal.logUpdate(IataCode.encode("JFK"), DataPointType.WIND, 7, 0, 0, 0, 0, 9);
+            wal.logRemoveAirport(IataCode.encode("JFK"));
+        }
+
+        Recorder recorder = new Recorder();
+        try (WriteAheadLog wal = new WriteAheadLog(dir, 4096, WriteAheadLog.FsyncPolicy.NONE, 0)) {
+            assertEquals(3, wal.replay(recorder));
+        }
+        assertEquals("JFK HUMIDTY 0.0 0 0 0 0 0", recorder.records.get(0));
+        assertEquals("JFK WIND 7.0 0 0 0 0 9", recorder.records.get(1));
+        assertEquals("remove JFK", recorder.records.get(2));
+    }
+}